@@ -13,6 +13,7 @@ public class CommandCenterTestHarness {
     private final Scanner scanner; // To read test cases
     private final int[] elevatorFloors = new int[5]; // Track current floor for each elevator (1-4)
     private ElevatorMode currentMode = ElevatorMode.INDEPENDENT;
+    private Topic[] listenTopics; // Everything the listener prints, built once in subscribeAll
     private static CommandCenterTestHarness instance;
 
     public CommandCenterTestHarness() {
@@ -22,6 +23,10 @@ public class CommandCenterTestHarness {
         for (int i = 1; i <= 4; i++) {
             elevatorFloors[i] = 1;
         }
+        // Keep the state topics on the server so displays started later catch up
+        for (Topic t : Topics.STATE_TOPICS) {
+            bus.retain(t);
+        }
         subscribeAll();
         startListener();
     }
@@ -54,65 +59,40 @@ public class CommandCenterTestHarness {
     }
 
     private void subscribeAll() {
+        List<Topic> topics = new ArrayList<>();
         for (int i = 1; i <= 4; i++) {
-            bus.subscribe(new Topic(1, i));  // elevator position
-            bus.subscribe(new Topic(2, i));  // elevator direction
-            bus.subscribe(new Topic(3, i));  // elevator door state
-            bus.subscribe(new Topic(6, i));  // fire key
-            bus.subscribe(new Topic(8, i));  // request buttons (floor select)
+            topics.add(Topic.of(1, i));  // elevator position
+            topics.add(Topic.of(2, i));  // elevator direction
+            topics.add(Topic.of(3, i));  // elevator door state
+            topics.add(Topic.of(6, i));  // fire key
+            topics.add(Topic.of(8, i));  // request buttons (floor select)
         }
 
         for (int i = 1; i <= 10; i++) {
-            bus.subscribe(new Topic(0, i));  // call buttons (car request)
-            bus.subscribe(new Topic(13, i));  // elevator disabled
+            topics.add(Topic.of(0, i));  // call buttons (car request)
+            topics.add(Topic.of(13, i));  // elevator disabled
         }
 
-        bus.subscribe(new Topic(5, 0)); // fire alarm
-        bus.subscribe(new Topic(7, 0)); // elevator mode (system-wide)
+        topics.add(Topic.of(5, 0)); // fire alarm
+        topics.add(Topic.of(7, 0)); // elevator mode (system-wide)
+
+        listenTopics = topics.toArray(new Topic[0]);
+        for (Topic t : listenTopics) {
+            bus.subscribe(t);
+        }
     }
 
     private void startListener() {
         Thread listener = new Thread(() -> {
             while (true) {
-                // Check per-elevator topics
-                for (int i = 1; i <= 4; i++) {
-                    Topic[] listenTopics = {
-                            new Topic(1, i), new Topic(2, i), new Topic(3, i),
-                            new Topic(6, i), new Topic(8, i),
-                            new Topic(1, i), new Topic(2, i), new Topic(3, i), new Topic(6, i), new Topic(13, i)
-                    };
-                    for (Topic t : listenTopics) {
-                        Message message = bus.getMessage(t);
-                        if (message != null) {
-                            printMessage(t, message);
-                        }
-                    }
-                }
-
-                // Check call button topics (floors 1-10)
-                for (int i = 1; i <= 10; i++) {
-                    Topic callTopic = new Topic(0, i);
-                    Message message = bus.getMessage(callTopic);
-                    if (message != null) {
-                        printMessage(callTopic, message);
-                    }
-                }
-
-                // Check system-wide topics
-                Topic[] systemTopics = {
-                        new Topic(5, 0),  // fire alarm
-                        new Topic(7, 0)   // elevator mode
-                };
-                for (Topic t : systemTopics) {
-                    Message message = bus.getMessage(t);
+                try {
+                    // Wakes as soon as any subscribed topic has a message
+                    Message message = bus.select(1000, listenTopics);
                     if (message != null) {
-                        printMessage(t, message);
+                        printMessage(message.getTopics(), message);
                     }
-                }
-
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException ignored) {
+                } catch (InterruptedException e) {
+                    return;
                 }
             }
         });
@@ -201,7 +181,7 @@ public class CommandCenterTestHarness {
         } else if (state.equals("closed") || state.equals("close")) {
             doorState = 1;
         }
-        bus.publish(new Message(new Topic(3, val), new int[]{doorState, 0, 0, 0}));
+        bus.publish(Topic.of(3, val), doorState, 0, 0, 0);
         System.out.println("<door, elevator, " + val + ":" + state + ", -, -, ->");
     }
 
@@ -243,8 +223,8 @@ public class CommandCenterTestHarness {
         // Update tracked position
         elevatorFloors[val] = floor;
 
-        bus.publish(new Message(new Topic(2, val), new int[]{direction, 0, 0, 0}));
-        bus.publish(new Message(new Topic(1, val), new int[]{floor, 0, 0, 0}));
+        bus.publish(Topic.of(2, val), direction, 0, 0, 0);
+        bus.publish(Topic.of(1, val), floor, 0, 0, 0);
         System.out.println("<elevator, motion, " + val + ":" + dir + " to " + floor + ", -, -, ->");
     }
 
@@ -256,7 +236,7 @@ public class CommandCenterTestHarness {
         } else {
             fire = 0;
         }
-        bus.publish(new Message(new Topic(5, 0), new int[]{fire, 0, 0, 0}));
+        bus.publish(Topic.of(5, 0), fire, 0, 0, 0);
         System.out.println("<fire alarm, 0:" + state + ", -, -, -, ->");
     }
 
@@ -277,22 +257,25 @@ public class CommandCenterTestHarness {
         currentMode = mode;
 
         // Mode is system-wide, not per-elevator, so use subtopic 0
-        bus.publish(new Message(new Topic(7, 0), new int[]{mode.ordinal(), 0, 0, 0}));
+        // Everything a mode change causes is collected and published as one burst
+        List<Message> burst = new ArrayList<>();
+        burst.add(new Message(Topic.of(7, 0), new int[]{mode.ordinal(), 0, 0, 0}));
         System.out.println("<mode, system:" + mode + ", -, -, -, ->");
 
         // If entering fire mode, send all elevators to floor 1 and open doors
         if (mode == ElevatorMode.FIRE) {
             // Activate fire alarm
-            bus.publish(new Message(new Topic(5, 0), new int[]{1, 0, 0, 0}));
+            burst.add(new Message(Topic.of(5, 0), new int[]{1, 0, 0, 0}));
 
             // Send all elevators to floor 1 and open doors
             for (int i = 1; i <= 4; i++) {
                 elevatorFloors[i] = 1; // Update tracked positions
-                bus.publish(new Message(new Topic(2, i), new int[]{1, 0, 0, 0})); // direction: down
-                bus.publish(new Message(new Topic(1, i), new int[]{1, 0, 0, 0})); // position: floor 1
-                bus.publish(new Message(new Topic(3, i), new int[]{0, 0, 0, 0})); // door: open
+                burst.add(new Message(Topic.of(2, i), new int[]{1, 0, 0, 0})); // direction: down
+                burst.add(new Message(Topic.of(1, i), new int[]{1, 0, 0, 0})); // position: floor 1
+                burst.add(new Message(Topic.of(3, i), new int[]{0, 0, 0, 0})); // door: open
             }
         }
+        bus.publishAll(burst);
     }
 
     private void handleCall(String[] segments) {
@@ -315,7 +298,7 @@ public class CommandCenterTestHarness {
             return;
         }
 
-        bus.publish(new Message(new Topic(0, floor), new int[]{direction, 0, 0, 0}));
+        bus.publish(Topic.of(0, floor), direction, 0, 0, 0);
         System.out.println("<call button, floor:" + floor + ", " + dir + ", -, -, ->");
     }
 
@@ -335,7 +318,7 @@ public class CommandCenterTestHarness {
             return;
         }
 
-        bus.publish(new Message(new Topic(8, elevator), new int[]{floor, 0, 0, 0}));
+        bus.publish(Topic.of(8, elevator), floor, 0, 0, 0);
         System.out.println("<request button, elevator:" + elevator + ", floor:" + floor + ", -, -, ->");
     }
 
@@ -353,7 +336,7 @@ public class CommandCenterTestHarness {
 
         // publish fire key message
         System.out.println("<fire key, " + shaft + ":" + state + ", -, -, -, ->");
-        bus.publish(new Message(new Topic(6, shaft), new int[]{state, 0, 0, 0}));
+        bus.publish(Topic.of(6, shaft), state, 0, 0, 0);
     }
 
     /* // shouldn't be able to send disabled to GUI?
@@ -367,7 +350,7 @@ public class CommandCenterTestHarness {
 
         // publish elevator disabled message
         System.out.println("<elevator disabled, " + shaft + ":" + state + ", -, -, -, ->");
-        bus.publish(new Message(new Topic(13,shaft), new int[]{state,0,0,0}));
+        bus.publish(Topic.of(13,shaft), state,0,0,0);
     }
      */
 }
@@ -4,7 +4,6 @@ import CommandCenter.Topics;
 import CommandCenter.states.ElevatorDirectionState;
 import CommandCenter.states.ElevatorDoorState;
 import SoftwareBus.Bus.Bus;
-import SoftwareBus.Bus.Message;
 import SoftwareBus.Bus.Topic;
 
 /**
@@ -28,46 +27,28 @@ public class ElevatorCommunicator {
         this.elevatorDoorStateTopic = Topics.ELEVATOR_DOOR_STATES[elevatorID];
 
         this.subscribeToTopics();
-
-        Thread thread = new Thread(() -> {
-            //Continuously check for updates and make changes accordingly
-            while (true) {
-                //  Get the oldest unread message
-                //  May be null if there are no unread messages
-                Message elevatorPosition = this.bus.getMessage(this.elevatorPositionTopic);
-                Message elevatorDirection = this.bus.getMessage(this.elevatorDirectionTopic);
-                Message elevatorDoorState = this.bus.getMessage(this.elevatorDoorStateTopic);
-                //Let's only look for updates and make changes ten times a second
-                if (elevatorPosition != null) {
-                    this.setCurrentFloor(elevatorPosition.bodyOne());
-                }
-                if (elevatorDirection != null) {
-                    this.setElevatorDirectionState(ElevatorDirectionState.values()[elevatorDirection.bodyOne()]);
-                }
-                if (elevatorDoorState != null) {
-                    this.setElevatorDoorState(ElevatorDoorState.values()[elevatorDoorState.bodyOne()]);
-                }
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        });
-        thread.setDaemon(true);
-        thread.start();
     }
 
     /**
-     * Registers the bus for all the necessary topics:
+     * Registers the bus for all the necessary topics, each update is applied
+     * as soon as it arrives:
      *      Elevator Position
      *      Elevator Direction
      *      Elevator Door State
+     * These are state, so they are retained and the last known values arrive
+     * right after subscribing. Only the newest value of each waits for the handler,
+     * stale positions are skipped if the UI falls behind
      */
     private void subscribeToTopics() {
-        this.bus.subscribe(this.elevatorPositionTopic);
-        this.bus.subscribe(this.elevatorDirectionTopic);
-        this.bus.subscribe(this.elevatorDoorStateTopic);
+        this.bus.retain(this.elevatorPositionTopic);
+        this.bus.retain(this.elevatorDirectionTopic);
+        this.bus.retain(this.elevatorDoorStateTopic);
+        this.bus.subscribeLatest(this.elevatorPositionTopic,
+                m -> this.setCurrentFloor(m.bodyOne()));
+        this.bus.subscribeLatest(this.elevatorDirectionTopic,
+                m -> this.setElevatorDirectionState(ElevatorDirectionState.values()[m.bodyOne()]));
+        this.bus.subscribeLatest(this.elevatorDoorStateTopic,
+                m -> this.setElevatorDoorState(ElevatorDoorState.values()[m.bodyOne()]));
     }
 
     public ElevatorDoorState getElevatorDoorState() {
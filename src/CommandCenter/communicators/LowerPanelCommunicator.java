@@ -37,11 +37,9 @@ public class LowerPanelCommunicator {
         this.elevatorStates = new int[ElevatorCommandCenterDisplay.NUM_ELEVATORS];
         Arrays.fill(elevatorStates,1);
 
-        // get messages related to fire key status (0/1)
-        this.lowerBus.subscribe(Topics.FIRE_KEY);
-
-        // get messages related to elevator disability (0/1)
-        this.lowerBus.subscribe(Topics.ELEVATOR_DISABLED);
+        // get messages related to elevator disability (0/1), only the newest per
+        // elevator is kept since nothing reads them yet
+        this.lowerBus.subscribeLatest(Topics.ELEVATOR_DISABLED);
 
 
         // set the event when an enabled button is pressed
@@ -56,71 +54,39 @@ public class LowerPanelCommunicator {
             });
         }
 
-        // start the listening thread
-        listeningThread();
+        // apply fire key updates as they arrive, skipping to the newest per shaft
+        this.lowerBus.subscribeLatest(Topics.FIRE_KEY, this::onFireKeyUpdate);
     }
 
     /**
-     * Listens for updates from the data bus and updates the GUI accordingly
+     * Updates the GUI for a fire key message from the data bus
      * **/
-    private void listeningThread()
+    private void onFireKeyUpdate(Message fireKeyUpdate)
+    {
+        // subtopic determines elevator shaft
+        int elevatorShaft = fireKeyUpdate.subtopicInt();
+        if(elevatorShaft < 1 || elevatorShaft > ElevatorCommandCenterDisplay.NUM_ELEVATORS)
+        {
+            return;
+        }
+
+        // update FireKeyLight
+        System.out.println("Fire Key Light At: " + elevatorShaft);
+        System.out.println("    - New State: " + ((fireKeyUpdate.bodyOne() == 1) ? "in" : "out"));
+        Platform.runLater(() -> this.display.toggleFireKeyLight(elevatorShaft,fireKeyUpdate.bodyOne()));
+    }
+
+    /* // shouldn't be able to send disabled to the GUI?
+    private void onDisabledUpdate(Message disabledUpdate)
     {
-        // new thread for message checking
-       Thread listenThread = new Thread( ()-> {
-
-            // continuously check message stream
-            while(true)
-            {
-                // get the oldest unread fire key message
-                // null if none are unread
-                for(Topic topic : Topics.FIRE_KEYS)
-                {
-                    Message fireKeyUpdate = this.lowerBus.getMessage(topic);
-                    if(fireKeyUpdate != null)
-                    {
-                        // subtopic determines elevator shaft
-                        int elevatorShaft = fireKeyUpdate.subtopicInt();
-
-                        // update FireKeyLight
-                        System.out.println("Fire Key Light At: " + elevatorShaft);
-                        System.out.println("    - New State: " + ((fireKeyUpdate.bodyOne() == 1) ? "in" : "out"));
-                        Platform.runLater(() -> this.display.toggleFireKeyLight(elevatorShaft,fireKeyUpdate.bodyOne()));
-                    }
-                }
-
-                /* get the oldest unread elevator disabled message  // shouldn't be able to send disabled to the GUI?
-                // null if none are unread
-                for(Topic disTopic : Topics.ELEVATORS_DISABLED)
-                {
-                    Message disabledUpdate = this.lowerBus.getMessage(disTopic);
-                    if(disabledUpdate != null)
-                    {
-                        // subtopic determines elevator shaft
-                        int elevatorShaft = disabledUpdate.subtopicInt();
-
-                        // update disabled visibility
-                        elevatorStates[elevatorShaft-1] = 1 - elevatorStates[elevatorShaft-1];
-                        System.out.println("DISABLING: " + (elevatorShaft-1));
-                        Platform.runLater(() -> this.display.toggleElevatorEnabledLights(elevatorShaft));
-                    }
-                }
-
-                 */
-
-                // only check once a second
-                try
-                {
-                    Thread.sleep(1000);
-                }
-                catch (InterruptedException e)
-                {
-                    throw new RuntimeException(e);
-                }
-            }
-
-        });
-       listenThread.setDaemon(true);
-       listenThread.start();
+        // subtopic determines elevator shaft
+        int elevatorShaft = disabledUpdate.subtopicInt();
+
+        // update disabled visibility
+        elevatorStates[elevatorShaft-1] = 1 - elevatorStates[elevatorShaft-1];
+        System.out.println("DISABLING: " + (elevatorShaft-1));
+        Platform.runLater(() -> this.display.toggleElevatorEnabledLights(elevatorShaft));
     }
+     */
 
 }
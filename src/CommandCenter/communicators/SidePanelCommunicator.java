@@ -30,62 +30,45 @@ public class SidePanelCommunicator {
         // Create new bus instance
         this.bus = new Bus();
 
-        // Subscribe to mode change messages
-        this.bus.subscribe(Topics.ELEVATOR_MODE);
-
         // Set default mode to INDEPENDENT (as per CommandCenter design)
         this.currentMode = ElevatorMode.INDEPENDENT;
 
-        // Start background thread to listen for incoming mode changes
-        startMessagePollingThread();
+        // Handle incoming mode changes as they arrive, starting with the
+        // last mode published if the bus retained one
+        this.bus.retain(Topics.ELEVATOR_MODE);
+        this.bus.subscribeLatest(Topics.ELEVATOR_MODE, this::onModeMessage);
     }
 
     /**
-     * Start a background thread that continuously polls for incoming mode messages
+     * Apply a mode message received from the bus
+     * @param modeMessage the message carrying the new mode in body[0]
      */
-    private void startMessagePollingThread() {
-        Thread pollingThread = new Thread(() -> {
-            while (true) {
-                // Check for mode change messages from the bus
-                Message modeMessage = this.bus.getMessage(Topics.ELEVATOR_MODE);
-
-                if (modeMessage != null) {
-                    // Extract mode value from message body
-                    int modeValue = modeMessage.bodyOne();
-
-                    // Convert to ElevatorMode enum
-                    // 0 = INDEPENDENT, 1 = CENTRALIZED, 2 = FIRE
-                    if (modeValue >= 0 && modeValue < ElevatorMode.values().length) {
-                        ElevatorMode newMode = ElevatorMode.values()[modeValue];
-
-                        // Only update if mode actually changed
-                        if (this.currentMode != newMode) {
-                            this.currentMode = newMode;
-                            System.out.println("Mode updated from bus: " + newMode);
-
-                            // Notify UI callback if registered (on JavaFX thread)
-                            if (onModeChangedFromBus != null) {
-                                final ElevatorMode modeToNotify = newMode;
-                                Platform.runLater(() -> onModeChangedFromBus.accept(modeToNotify));
-                            }
-                        }
-                    }
-                }
-
-                // Poll every 100ms to avoid busy waiting
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    System.err.println("Polling thread interrupted");
-                    break;
+    private void onModeMessage(Message modeMessage) {
+        // Only the system-wide mode (subtopic 0) drives the side panel
+        if (modeMessage.subtopicInt() != Topics.ELEVATOR_MODE.subtopic()) {
+            return;
+        }
+
+        // Extract mode value from message body
+        int modeValue = modeMessage.bodyOne();
+
+        // Convert to ElevatorMode enum
+        // 0 = INDEPENDENT, 1 = CENTRALIZED, 2 = FIRE
+        if (modeValue >= 0 && modeValue < ElevatorMode.values().length) {
+            ElevatorMode newMode = ElevatorMode.values()[modeValue];
+
+            // Only update if mode actually changed
+            if (this.currentMode != newMode) {
+                this.currentMode = newMode;
+                System.out.println("Mode updated from bus: " + newMode);
+
+                // Notify UI callback if registered (on JavaFX thread)
+                if (onModeChangedFromBus != null) {
+                    final ElevatorMode modeToNotify = newMode;
+                    Platform.runLater(() -> onModeChangedFromBus.accept(modeToNotify));
                 }
             }
-        });
-
-        // Set as daemon thread so it doesn't prevent program exit
-        pollingThread.setDaemon(true);
-        pollingThread.start();
+        }
     }
 
     /**
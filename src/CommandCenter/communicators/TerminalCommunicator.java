@@ -4,7 +4,6 @@ import CommandCenter.Topics;
 import CommandCenter.states.CallButtonSetState;
 import SoftwareBus.Bus.Bus;
 import SoftwareBus.Bus.Message;
-import SoftwareBus.Bus.Topic;
 
 import java.util.Arrays;
 
@@ -19,68 +18,58 @@ public class TerminalCommunicator {
             Arrays.fill(requestedFloorState, false);
         }
         this.subscribe();
+    }
 
-        new Thread(() -> {
-            //Continuously check for updates and make changes accordingly
-            while (true) {
-                //  Get the oldest unread message
-                //  May be null if there are no unread messages
+    /**
+     * Registers a handler for car requests and floor selects, each applied as soon
+     * as it arrives
+     */
+    private void subscribe() {
+        this.bus.subscribe(Topics.CAR_REQUEST, this::onCarRequest);
+        this.bus.subscribe(Topics.FLOOR_SELECT, this::onFloorSelect);
+    }
 
-                //  Let's only look for updates and make changes ten times a second
-                for (Topic topic : Topics.CAR_REQUESTS) {
-                    Message carCall = this.bus.getMessage(topic);
-                    if (carCall != null) {
-                        int floor = carCall.subtopicInt() - 1;  // Convert 1-based floor to 0-based index
-                        CallButtonSetState currentState = this.callButtonSetStates[floor];
-                        switch (carCall.bodyOne()) {
-                            case 1 -> {
-                                switch (currentState) {
-                                    case UP -> {
-                                        this.callButtonSetStates[floor] = CallButtonSetState.BOTH;
-                                    }
-                                    case OFF -> {
-                                        this.callButtonSetStates[floor] = CallButtonSetState.DOWN;
-                                    }
-                                    case DOWN, BOTH -> {}
-                                }
-                            }
-                            case 2 -> {
-                                switch (currentState) {
-                                    case DOWN -> {
-                                        this.callButtonSetStates[floor] = CallButtonSetState.BOTH;
-                                    }
-                                    case OFF -> {
-                                        this.callButtonSetStates[floor] = CallButtonSetState.UP;
-                                    }
-                                    case UP, BOTH -> {}
-                                }
-                            }
-                        }
+    private void onCarRequest(Message carCall) {
+        int floor = carCall.subtopicInt() - 1;  // Convert 1-based floor to 0-based index
+        if (floor < 0 || floor >= this.callButtonSetStates.length) {
+            return;
+        }
+        CallButtonSetState currentState = this.callButtonSetStates[floor];
+        switch (carCall.bodyOne()) {
+            case 1 -> {
+                switch (currentState) {
+                    case UP -> {
+                        this.callButtonSetStates[floor] = CallButtonSetState.BOTH;
                     }
-                }
-
-                for (Topic topic : Topics.FLOOR_SELECTS) {
-                    Message requestButtonMessage = this.bus.getMessage(topic);
-                    if (requestButtonMessage != null) {
-                        int elevator = requestButtonMessage.subtopicInt();
-                        int floor = requestButtonMessage.bodyOne();
-                        // Convert 1-based elevator and floor to 0-based indices
-                        this.requestedFloorStates[elevator - 1][floor - 1] = true;
+                    case OFF -> {
+                        this.callButtonSetStates[floor] = CallButtonSetState.DOWN;
                     }
+                    case DOWN, BOTH -> {}
                 }
-
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
+            }
+            case 2 -> {
+                switch (currentState) {
+                    case DOWN -> {
+                        this.callButtonSetStates[floor] = CallButtonSetState.BOTH;
+                    }
+                    case OFF -> {
+                        this.callButtonSetStates[floor] = CallButtonSetState.UP;
+                    }
+                    case UP, BOTH -> {}
                 }
             }
-        }).start();
+        }
     }
 
-    private void subscribe() {
-        this.bus.subscribe(Topics.CAR_REQUEST);
-        this.bus.subscribe(Topics.FLOOR_SELECT);
+    private void onFloorSelect(Message requestButtonMessage) {
+        int elevator = requestButtonMessage.subtopicInt();
+        int floor = requestButtonMessage.bodyOne();
+        if (elevator < 1 || elevator > this.requestedFloorStates.length
+                || floor < 1 || floor > this.requestedFloorStates[elevator - 1].length) {
+            return;
+        }
+        // Convert 1-based elevator and floor to 0-based indices
+        this.requestedFloorStates[elevator - 1][floor - 1] = true;
     }
 
     public CallButtonSetState[] getCallButtonSetStates() {
@@ -0,0 +1,103 @@
+package Control;
+
+import java.util.List;
+
+/**
+ * How an ElevatorController picks its stops. The controller keeps the requests and
+ * the car, a policy only answers two questions about them: where to go next when
+ * the car is at rest, and whether the moving car should stop at a floor ahead of it.
+ *
+ * Requests are given as floor masks, bit f set for floor f (floors 0 to 63).
+ * A policy instance belongs to one car and may keep state between calls. It is
+ * only called with its controller's lock held, so one call at a time, though not
+ * always from the same thread.
+ *
+ * The policy is chosen at startup with -Ddispatch.policy=nearest|look|eta,
+ * LOOK when nothing is given.
+ */
+public interface DispatchPolicy {
+
+    /**
+     * The system property that selects the policy of new controllers
+     */
+    String PROPERTY = "dispatch.policy";
+
+    /**
+     * The names named() accepts
+     */
+    List<String> NAMES = List.of("nearest", "look", "eta");
+
+    /**
+     * Returned by next() when nothing is pending
+     */
+    int NONE = FloorMasks.NONE;
+
+    /**
+     * Pick the next stop of a car at rest
+     *
+     * @param floor    the floor the car is at
+     * @param hallUp   pending up hall calls
+     * @param hallDown pending down hall calls
+     * @param cabin    pending cabin requests
+     * @return the floor to go to, floor itself to serve it without moving, or NONE
+     */
+    int next(int floor, long hallUp, long hallDown, long cabin);
+
+    /**
+     * Decide whether a moving car stops at a floor on its way to target. Only asked
+     * about floors the car can still brake for, one floor at a time from the nearest
+     *
+     * @param floor  a floor between the car and target
+     * @param target the floor the car is going to
+     * @return true to stop and serve floor before going on
+     */
+    boolean stopsOnTheWay(int floor, int target, long hallUp, long hallDown, long cabin);
+
+    /**
+     * @return the name named() knows this policy by
+     */
+    String name();
+
+    /**
+     * Go to the nearest request in any direction and never stop on the way.
+     * How the controller dispatched before policies existed
+     */
+    static DispatchPolicy nearest() {
+        return new NearestPolicy();
+    }
+
+    /**
+     * LOOK collective control, see LookPolicy
+     */
+    static DispatchPolicy look() {
+        return new LookPolicy();
+    }
+
+    /**
+     * Pick the trip that serves the most requests per estimated second, see EtaPolicy
+     */
+    static DispatchPolicy eta() {
+        return new EtaPolicy();
+    }
+
+    /**
+     * @param name one of NAMES, case ignored
+     * @return a new policy of that name
+     * @throws IllegalArgumentException if there is no policy of that name
+     */
+    static DispatchPolicy named(String name) {
+        return switch (name.toLowerCase()) {
+            case "nearest" -> nearest();
+            case "look" -> look();
+            case "eta" -> eta();
+            default -> throw new IllegalArgumentException("Unknown dispatch policy " + name + ", expected one of " + NAMES);
+        };
+    }
+
+    /**
+     * @return a new policy of the kind the dispatch.policy system property selects
+     */
+    static DispatchPolicy fromSystemProperty() {
+        return named(System.getProperty(PROPERTY, "look"));
+    }
+}
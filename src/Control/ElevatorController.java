@@ -1,19 +1,18 @@
 package Control;
 
+import Sim.MockSim;
+import Sim.SimClock;
+import Logging.EventLog;
+import Logging.LogEntry;
+import Logging.Logger;
 import Wiring.EventBus;
+import Wiring.IntChannel;
 import Wiring.Topics;
 import LobbyGUI.LobbyPanelAPI;
 import CabinGUI.CabinPanelAPI;
 import CommandCenterGUI.CommandCenterPanelAPI;
 import CabinGUI.DoorState;
 
-import javafx.application.Platform;
-import javafx.animation.PauseTransition;
-import javafx.util.Duration;
-
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.stream.Collectors;
 
 import javax.sound.sampled.Clip;
 import Audio.Sfx;
@@ -27,32 +26,90 @@ import Audio.Sfx;
  *      UI_HALL_CALL_DOWN(floor)
  *      UI_CABIN_SELECT(floor)
  *      UI_FIRE_TOGGLED(boolean)
- *  - Track pending requests in three sets.
+ *  - Track pending requests in three RequestRegisters (floors 0 to 63).
  *  - Maintain currentFloor, targetFloor, moving flag, fireMode.
- *  - On each schedule(), pick the nearest pending request and issue CTRL_CMD_MOVE_TO(target),
- *    with a short door-closing animation delay before motion.
- *  - On SIM_FLOOR_TICK(floor), update currentFloor, detect arrival when floor == target.
- *  - On arrival, clear requests for that floor, animate doors opening, dwell briefly, then reschedule.
- *  - Push UI state into Cabin/Lobby/CommandCenter via their APIs.
+ *  - On each schedule(), ask the DispatchPolicy (LOOK unless one is given) for the next stop and
+ *    issue CTRL_CMD_MOVE_TO(target), with a short door-closing animation delay before motion.
+ *  - Door and dwell delays are timed by a SimClock, the wall clock unless one is given.
+ *  - New work while moving may move the target closer: if the policy wants a stop between the
+ *    car and its target that the car can still brake for, the trip is retargeted there
+ *    (CTRL_CMD_RETARGET) and the old target waits for the next schedule(). When the sim
+ *    answers SIM_RETARGET_REJECTED(floor), the car had already passed that stop and the
+ *    target goes back to the floor the sim is still heading to.
+ *  - On SIM_FLOOR_TICK(floor), update currentFloor. Arrival is the sim's SIM_ARRIVED(floor),
+ *    not a tick at the target: only the sim knows whether the car stopped there.
+ *  - On arrival, clear the cabin request and the hall call in the direction the car leaves in
+ *    (see clearServed()), publish CTRL_FLOOR_SERVED(floor), animate doors opening, dwell
+ *    briefly, then reschedule. A hall call the other way waits for the return sweep.
+ *  - Push UI state through a UiPort: FxUiPort for the Cabin/Lobby/CommandCenter panels,
+ *    or UiPort.headless() to run without a display.
  */
 public class ElevatorController {
+    private static final Logger LOG = EventLog.logger("CTRL");
+
+    /**
+     * How long the doors take to open or close
+     */
+    static final long DOOR_MOVE_MS = 100;
+    /**
+     * How long the car waits with closed doors before it starts moving
+     */
+    static final long CLOSE_DELAY_MS = 1000;
+    /**
+     * How long the doors stay open after arriving at a requested floor
+     */
+    static final long ARRIVAL_DWELL_MS = 5000;
+    /**
+     * How long the doors stay open when a request is served without moving
+     */
+    static final long SAME_FLOOR_DWELL_MS = 500;
+    /**
+     * What a car at rest needs before it leaves: closing the doors and the close delay
+     */
+    static final long START_MS = DOOR_MOVE_MS + CLOSE_DELAY_MS;
+    /**
+     * What every stop on the way adds: opening, dwelling, closing and the close delay
+     */
+    static final long STOP_MS = 2 * DOOR_MOVE_MS + CLOSE_DELAY_MS + ARRIVAL_DWELL_MS;
+
     private final EventBus bus;
-    private final LobbyPanelAPI lobby;
-    private final CabinPanelAPI cabin;
-    private final CommandCenterPanelAPI commandCenter;
-
-    private int currentFloor = 0;
-    private int targetFloor = 0;
-    private boolean overloaded = false;
-    private boolean obstructed = false;
-    private boolean moving = false;
+    private final SimClock clock;
+    private final IntChannel moveTo;
+    private final IntChannel served;
+    private final IntChannel retarget;
+    private final UiPort ui;
+    private final DispatchPolicy policy;
+
+    // The state below changes only with this controller's lock held: every bus handler,
+    // clock callback and public method that changes it is synchronized on the controller,
+    // since they arrive on the UI, sim and clock threads. The fields a GroupController
+    // reads without the lock are volatile
+    private volatile int currentFloor = 0;
+    private volatile int targetFloor = 0;
+    private volatile boolean overloaded = false;
+    private volatile boolean obstructed = false;
+    private volatile boolean moving = false;
     private DoorState doorState = DoorState.OPEN;
 
-    private boolean fireMode = false;
-
-    private final Set<Integer> hallUp   = new ConcurrentSkipListSet<>();
-    private final Set<Integer> hallDown = new ConcurrentSkipListSet<>();
-    private final Set<Integer> cabinSel = new ConcurrentSkipListSet<>();
+    private volatile boolean fireMode = false;
+
+    /**
+     * True once the sim was told to move, until the trip ends. Before that the doors are
+     * still closing and the target can change without telling the sim
+     */
+    private boolean departed = false;
+    /**
+     * When the car left or last reached a floor, by the clock, to tell how far it is past it
+     */
+    private long tickAt;
+    /**
+     * The way the car last went or is going, 1 up or -1 down
+     */
+    private int direction = 1;
+
+    private final RequestRegister hallUp   = new RequestRegister();
+    private final RequestRegister hallDown = new RequestRegister();
+    private final RequestRegister cabinSel = new RequestRegister();
 
     private final Clip fireLoop      = Sfx.FIRE_LOOP;
     private final Clip moveLoop      = Sfx.ELEVATOR_LOOP;
@@ -65,160 +122,229 @@ public class ElevatorController {
                               LobbyPanelAPI lobby,
                               CabinPanelAPI cabin) {
         this(bus, lobby, cabin, null);
-        System.out.println("[CTRL] Controller booted (no command center) | state " + stateSummary());
     }
 
     public ElevatorController(EventBus bus,
                               LobbyPanelAPI lobby,
                               CabinPanelAPI cabin,
                               CommandCenterPanelAPI commandCenter) {
+        this(bus, lobby, cabin, commandCenter, SimClock.wall());
+    }
+
+    /**
+     * @param clock times doors and dwells, a VirtualClock runs the controller in simulated time
+     */
+    public ElevatorController(EventBus bus,
+                              LobbyPanelAPI lobby,
+                              CabinPanelAPI cabin,
+                              CommandCenterPanelAPI commandCenter,
+                              SimClock clock) {
+        this(bus, new FxUiPort(lobby, cabin, commandCenter), clock);
+    }
+
+    /**
+     * @param ui    where the state is shown, UiPort.headless() for no display
+     * @param clock times doors and dwells, a VirtualClock runs the controller in simulated time
+     */
+    public ElevatorController(EventBus bus, UiPort ui, SimClock clock) {
+        this(bus, ui, clock, DispatchPolicy.fromSystemProperty());
+    }
+
+    /**
+     * @param ui     where the state is shown, UiPort.headless() for no display
+     * @param clock  times doors and dwells, a VirtualClock runs the controller in simulated time
+     * @param policy picks the stops, a new instance per controller
+     */
+    public ElevatorController(EventBus bus, UiPort ui, SimClock clock, DispatchPolicy policy) {
         this.bus = bus;
-        this.lobby = lobby;
-        this.cabin = cabin;
-        this.commandCenter = commandCenter;
+        this.clock = clock;
+        this.moveTo = bus.intChannel(Topics.CTRL_CMD_MOVE_TO);
+        this.served = bus.intChannel(Topics.CTRL_FLOOR_SERVED);
+        this.retarget = bus.intChannel(Topics.CTRL_CMD_RETARGET);
+        this.ui = ui;
+        this.policy = policy;
 
         wireSubscriptions();
         pushUi();
-        System.out.println("[CTRL] Controller booted (with command center) | state " + stateSummary());
+        log(LOG.info("Controller booted").field("ui", ui.getClass().getSimpleName()).field("policy", policy.name()));
     }
 
     private void wireSubscriptions() {
-        bus.subscribe(Topics.UI_OVERLOAD_TOGGLED, e -> {
-            overloaded = (boolean) e.payload();
-            if (overloaded) obstructed = false;
-
-            log("OVERLOAD toggled -> " + (overloaded ? "ON" : "OFF"));
+        bus.booleanChannel(Topics.UI_OVERLOAD_TOGGLED).subscribe(active -> {
+            synchronized (this) {
+                overloaded = active;
+                if (overloaded) obstructed = false;
+
+                log(LOG.info("OVERLOAD toggled").field("overloaded", overloaded));
+
+                if (overloaded && moving) {
+                    moving = false;
+                    departed = false;
+                    targetFloor = currentFloor;
+                    bus.publish(Topics.CTRL_CMD_STOP, null);
+                }
 
-            if (overloaded && moving) {
-                moving = false;
-                targetFloor = currentFloor;
-                bus.publish(Topics.CTRL_CMD_STOP, null);
+                pushUi();
+                schedule();
             }
-
-            cabin.setOverloaded(overloaded);
-            cabin.setObstructed(obstructed);
-
-            schedule();
         });
 
-        bus.subscribe(Topics.UI_OBSTRUCT_TOGGLED, e -> {
-            obstructed = (boolean) e.payload();
-            if (obstructed) overloaded = false;
+        bus.booleanChannel(Topics.UI_OBSTRUCT_TOGGLED).subscribe(active -> {
+            synchronized (this) {
+                obstructed = active;
+                if (obstructed) overloaded = false;
 
-            log("OBSTRUCTION toggled -> " + (obstructed ? "ON" : "OFF"));
-
-            if (obstructed && moving) {
-                moving = false;
-                targetFloor = currentFloor;
-                bus.publish(Topics.CTRL_CMD_STOP, null);
-            }
+                log(LOG.info("OBSTRUCTION toggled").field("obstructed", obstructed));
 
-            cabin.setOverloaded(overloaded);
-            cabin.setObstructed(obstructed);
+                if (obstructed && moving) {
+                    moving = false;
+                    departed = false;
+                    targetFloor = currentFloor;
+                    bus.publish(Topics.CTRL_CMD_STOP, null);
+                }
 
-            if (obstructed) {
-                doorState = DoorState.OBSTRUCTED;
+                if (obstructed) {
+                    doorState = DoorState.OBSTRUCTED;
+                }
                 pushUi();
-            }
 
-            schedule();
+                schedule();
+            }
         });
 
-        bus.subscribe(Topics.UI_HALL_CALL_UP, e -> {
-            int f = (int) e.payload();
+        bus.intChannel(Topics.UI_HALL_CALL_UP).subscribe(f -> {
+            synchronized (this) {
+                if (fireMode || overloaded || obstructed) {
+                    log(LOG.info("Denied request (fire/overload/obstruct active)").field("floor", f));
+                    Sfx.play(deny);
+                    return;
+                }
 
-            if (fireMode || overloaded || obstructed) {
-                log("Denied request (fire/overload/obstruct active)");
-                Sfx.play(deny);
-                return;
+                if (!hallUp.add(f)) {
+                    log(LOG.warn("Denied request (floor out of range)").field("floor", f));
+                    Sfx.play(deny);
+                    return;
+                }
+                log(LOG.info("Hall UP request received").field("floor", f));
+                schedule();
             }
-
-            log("Hall UP request received @ floor " + f);
-            hallUp.add(f);
-            schedule();
         });
 
-        bus.subscribe(Topics.UI_HALL_CALL_DOWN, e -> {
-            int f = (int) e.payload();
+        bus.intChannel(Topics.UI_HALL_CALL_DOWN).subscribe(f -> {
+            synchronized (this) {
+                if (fireMode || overloaded || obstructed) {
+                    log(LOG.info("Denied request (fire/overload/obstruct active)").field("floor", f));
+                    Sfx.play(deny);
+                    return;
+                }
 
-            if (fireMode || overloaded || obstructed) {
-                log("Denied request (fire/overload/obstruct active)");
-                Sfx.play(deny);
-                return;
+                if (!hallDown.add(f)) {
+                    log(LOG.warn("Denied request (floor out of range)").field("floor", f));
+                    Sfx.play(deny);
+                    return;
+                }
+                log(LOG.info("Hall DOWN request received").field("floor", f));
+                schedule();
             }
-
-            log("Hall DOWN request received @ floor " + f);
-            hallDown.add(f);
-            schedule();
         });
 
-        bus.subscribe(Topics.UI_CABIN_SELECT, e -> {
-            int f = (int) e.payload();
+        bus.intChannel(Topics.UI_CABIN_SELECT).subscribe(f -> {
+            synchronized (this) {
+                if (fireMode || overloaded || obstructed) {
+                    log(LOG.info("Denied request (fire/overload/obstruct active)").field("floor", f));
+                    Sfx.play(deny);
+                    return;
+                }
 
-            if (fireMode || overloaded || obstructed) {
-                log("Denied request (fire/overload/obstruct active)");
-                Sfx.play(deny);
-                return;
+                if (!cabinSel.add(f)) {
+                    log(LOG.warn("Denied request (floor out of range)").field("floor", f));
+                    Sfx.play(deny);
+                    return;
+                }
+                log(LOG.info("Cabin floor selected").field("floor", f));
+                schedule();
             }
-
-            log("Cabin floor selected: " + f);
-            cabinSel.add(f);
-            schedule();
         });
 
-        bus.subscribe(Topics.UI_FIRE_TOGGLED, e -> {
-            boolean active = (boolean) e.payload();
-            fireMode = active;
-            log("Fire mode toggled -> " + (fireMode ? "ACTIVE" : "OFF"));
-
-            if (fireMode) {
-                Sfx.loop(fireLoop);
-                hallUp.clear();
-                hallDown.clear();
-                cabinSel.clear();
-            } else {
-                Sfx.stop(fireLoop);
-            }
+        bus.booleanChannel(Topics.UI_FIRE_TOGGLED).subscribe(active -> {
+            synchronized (this) {
+                fireMode = active;
+                log(LOG.info("Fire mode toggled").field("active", fireMode));
+
+                if (fireMode) {
+                    Sfx.loop(fireLoop);
+                    hallUp.clear();
+                    hallDown.clear();
+                    cabinSel.clear();
+                } else {
+                    Sfx.stop(fireLoop);
+                }
 
-            schedule();
+                schedule();
+            }
         });
 
-        bus.subscribe(Topics.SIM_FLOOR_TICK, e -> {
-            int f = (int) e.payload();
-            currentFloor = f;
-            log("Tick -> floor " + currentFloor);
+        bus.intChannel(Topics.SIM_FLOOR_TICK).subscribe(f -> {
+            synchronized (this) {
+                currentFloor = f;
+                tickAt = clock.nowMillis();
+                log(LOG.debug("Tick").field("floor", currentFloor));
 
-            if (moving && currentFloor == targetFloor) {
-                moving = false;
-                log("Arrived at target " + currentFloor);
-
-                Sfx.stop(moveLoop);
-                Sfx.play(arriveBell);
+                pushUi();
+            }
+        });
 
-                if (fireMode && currentFloor == 0) {
-                    animateOpeningThen(null);
+        bus.intChannel(Topics.SIM_ARRIVED).subscribe(f -> {
+            synchronized (this) {
+                log(LOG.debug("SIM_ARRIVED").field("floor", f));
+                if (!moving) {
                     return;
                 }
+                if (f != targetFloor) {
+                    log(LOG.warn("Car stopped away from its target").field("floor", f));
+                    targetFloor = f;
+                }
+                currentFloor = f;
+                arrive();
+            }
+        });
 
-                clearServed(currentFloor);
-                animateOpeningThen(() -> {
-                    PauseTransition dwell = new PauseTransition(Duration.seconds(5.0));
-                    dwell.setOnFinished(ev2 -> schedule());
-                    dwell.play();
-                });
-            } else {
+        bus.intChannel(Topics.SIM_RETARGET_REJECTED).subscribe(f -> {
+            synchronized (this) {
+                if (!moving) {
+                    return;
+                }
+                log(LOG.warn("Retarget rejected, car passed it").field("from", targetFloor).field("to", f));
+                targetFloor = f;
                 pushUi();
             }
         });
+    }
 
-        bus.subscribe(Topics.SIM_ARRIVED, e -> {
-            log("SIM_ARRIVED at floor " + e.payload());
-        });
+    /**
+     * The car has stopped at its target: open up, serve the floor and reschedule after the dwell
+     */
+    private void arrive() {
+        moving = false;
+        departed = false;
+        log(LOG.info("Arrived at target").field("floor", currentFloor));
+
+        Sfx.stop(moveLoop);
+        Sfx.play(arriveBell);
+
+        if (fireMode && currentFloor == 0) {
+            animateOpeningThen(null);
+            return;
+        }
+
+        clearServed(currentFloor, false);
+        animateOpeningThen(() -> clock.schedule(ARRIVAL_DWELL_MS, this::schedule));
     }
 
-    private void schedule() {
+    private synchronized void schedule() {
         if (overloaded || obstructed) {
             moving = false;
+            departed = false;
             targetFloor = currentFloor;
 
             doorState = obstructed ? DoorState.OBSTRUCTED : DoorState.OPEN;
@@ -230,6 +356,7 @@ public class ElevatorController {
         if (fireMode) {
             if (!moving && currentFloor != 0) {
                 targetFloor = 0;
+                direction = -1;
                 moving = true;
                 animateClosingThenDispatch();
             } else if (!moving && currentFloor == 0) {
@@ -239,84 +366,152 @@ public class ElevatorController {
         }
 
         if (moving) {
-            log("schedule(): already moving, ignore new work");
+            retargetOnTheWay();
             return;
         }
 
-        Integer next = pickNearest();
-        log("schedule(): evaluating next stop -> " + next);
+        int next = policy.next(currentFloor, hallUp.mask(), hallDown.mask(), cabinSel.mask());
+        log(LOG.debug("schedule(): evaluating next stop").field("next", next));
 
-        if (next == null) {
+        if (next == DispatchPolicy.NONE) {
             targetFloor = currentFloor;
-            log("schedule(): no pending requests, staying idle");
+            log(LOG.debug("schedule(): no pending requests, staying idle"));
             pushUi();
             return;
         }
 
         if (next == currentFloor) {
-            log("Serving current floor " + currentFloor + " without moving");
-            clearServed(currentFloor);
-
-            animateOpeningThen(() -> {
-                PauseTransition dwell = new PauseTransition(Duration.seconds(0.5));
-                dwell.setOnFinished(ev2 -> schedule());
-                dwell.play();
-            });
+            log(LOG.info("Serving current floor without moving").field("floor", currentFloor));
+            clearServed(currentFloor, true);
+
+            animateOpeningThen(() -> clock.schedule(SAME_FLOOR_DWELL_MS, this::schedule));
             return;
         }
 
         targetFloor = next;
+        direction = next > currentFloor ? 1 : -1;
         moving = true;
         animateClosingThenDispatch();
     }
 
-    private Integer pickNearest() {
-        Integer best = null;
-        int bestDist = Integer.MAX_VALUE;
-
-        for (int f : hallUp) {
-            int d = Math.abs(f - currentFloor);
-            if (d < bestDist) {
-                bestDist = d;
-                best = f;
-            }
+    /**
+     * Move the target of the trip under way closer when the policy wants a stop between the
+     * car and its target that the car can still brake for
+     */
+    private void retargetOnTheWay() {
+        int direction = Integer.signum(targetFloor - currentFloor);
+        if (fireMode || direction == 0) {
+            return;
         }
-
-        for (int f : hallDown) {
-            int d = Math.abs(f - currentFloor);
-            if (d < bestDist) {
-                bestDist = d;
-                best = f;
+        long up = hallUp.mask();
+        long down = hallDown.mask();
+        long cabin = cabinSel.mask();
+        int from = departed ? firstStoppableFloor(direction) : currentFloor + direction;
+        for (int f = from; f * direction < targetFloor * direction; f += direction) {
+            if (policy.stopsOnTheWay(f, targetFloor, up, down, cabin)) {
+                log(LOG.info("Retargeting on the way").field("from", targetFloor).field("to", f));
+                targetFloor = f;
+                if (departed) {
+                    retarget.publish(f);
+                }
+                pushUi();
+                return;
             }
         }
+        log(LOG.debug("schedule(): moving, no stop on the way"));
+    }
 
-        for (int f : cabinSel) {
-            int d = Math.abs(f - currentFloor);
-            if (d < bestDist) {
-                bestDist = d;
-                best = f;
-            }
+    /**
+     * The nearest floor ahead the car can still stop at: where it would come to rest if it
+     * braked now, at full speed from its estimated position past the last floor it reached
+     */
+    private int firstStoppableFloor(int direction) {
+        double past = Math.min(1.0, (clock.nowMillis() - tickAt) / (double) MockSim.TICK_MS);
+        return currentFloor + direction * (int) Math.ceil(past + MockSim.STOPPING_FLOORS);
+    }
+
+    /**
+     * Serve a floor the car has stopped at: the cabin request, and the one hall call going
+     * the way the car leaves. It keeps its direction when it has a call that way here;
+     * it turns for a call the other way only when nothing is left beyond this floor, or
+     * when the car was at rest and the policy chose the floor for that call
+     */
+    private void clearServed(int floor, boolean atRest) {
+        long up = hallUp.mask();
+        long down = hallDown.mask();
+        long beyond = direction > 0
+                ? FloorMasks.atOrAbove(up | down | cabinSel.mask(), floor + 1)
+                : FloorMasks.atOrBelow(up | down | cabinSel.mask(), floor - 1);
+        boolean sameWay = FloorMasks.has(direction > 0 ? up : down, floor);
+        boolean otherWay = FloorMasks.has(direction > 0 ? down : up, floor);
+        if (!sameWay && otherWay && (beyond == 0 || atRest)) {
+            direction = -direction;
         }
+        log(LOG.debug("clearServed()").field("floor", floor).field("up", direction > 0));
 
-        return best;
+        cabinSel.remove(floor);
+        (direction > 0 ? hallUp : hallDown).remove(floor);
+
+        ui.requestsServed(direction > 0);
+        served.publish(floor);
     }
 
-    private void clearServed(int floor) {
-        log("clearServed(" + floor + ")");
+    public int getCurrentFloor() {
+        return currentFloor;
+    }
 
-        hallUp.remove(floor);
-        hallDown.remove(floor);
-        cabinSel.remove(floor);
+    public int getTargetFloor() {
+        return targetFloor;
+    }
 
-        Platform.runLater(() -> {
-            lobby.resetUpRequest();
-            lobby.resetDownRequest();
-            lobby.setMoving(false);
-        });
+    public boolean isMoving() {
+        return moving;
+    }
+
+    /**
+     * @return true when the car goes or, at a served floor, leaves upward
+     */
+    public boolean isGoingUp() {
+        return direction > 0;
+    }
+
+    /**
+     * @return false while fire mode, overload or obstruction make the car deny new requests
+     */
+    public boolean isAccepting() {
+        return !(fireMode || overloaded || obstructed);
+    }
+
+    /**
+     * @return the up hall calls this car has accepted and not yet served, bit f set for floor f
+     */
+    public long hallUpMask() {
+        return hallUp.mask();
+    }
+
+    /**
+     * @return the down hall calls this car has accepted and not yet served, bit f set for floor f
+     */
+    public long hallDownMask() {
+        return hallDown.mask();
     }
 
-    public void clearAllRequests() {
-        log("clearAllRequests()");
+    /**
+     * @return the floors selected in the cabin and not yet served, bit f set for floor f
+     */
+    public long cabinMask() {
+        return cabinSel.mask();
+    }
+
+    /**
+     * @return every floor this car still has to stop at, bit f set for floor f
+     */
+    public long pendingMask() {
+        return hallUp.mask() | hallDown.mask() | cabinSel.mask();
+    }
+
+    public synchronized void clearAllRequests() {
+        log(LOG.info("clearAllRequests()"));
         hallUp.clear();
         hallDown.clear();
         cabinSel.clear();
@@ -324,117 +519,77 @@ public class ElevatorController {
     }
 
     private void animateClosingThenDispatch() {
-        Platform.runLater(() -> {
-            doorState = DoorState.CLOSING;
-            Sfx.play(doorCloseClip);
-            pushUi();
+        doorState = DoorState.CLOSING;
+        Sfx.play(doorCloseClip);
+        pushUi();
 
-            PauseTransition closing = new PauseTransition(Duration.seconds(0.10));
-            closing.setOnFinished(ev -> {
+        clock.schedule(DOOR_MOVE_MS, () -> {
+            synchronized (this) {
                 doorState = DoorState.CLOSED;
                 pushUi();
 
-                PauseTransition delay = new PauseTransition(Duration.seconds(1.0));
-                delay.setOnFinished(ev2 -> {
-                    log("dispatching after close delay to " + targetFloor);
-                    Sfx.play(moveStartClip);
-                    Sfx.loop(moveLoop);
-                    bus.publish(Topics.CTRL_CMD_MOVE_TO, targetFloor);
+                clock.schedule(CLOSE_DELAY_MS, () -> {
+                    synchronized (this) {
+                        log(LOG.info("dispatching after close delay").field("to", targetFloor));
+                        Sfx.play(moveStartClip);
+                        Sfx.loop(moveLoop);
+                        tickAt = clock.nowMillis();
+                        departed = true;
+                        moveTo.publish(targetFloor);
+                    }
                 });
-                delay.play();
-            });
-            closing.play();
+            }
         });
     }
 
     private void animateOpeningThen(Runnable afterOpen) {
-        Platform.runLater(() -> {
-            doorState = DoorState.OPENING;
-            pushUi();
+        doorState = DoorState.OPENING;
+        pushUi();
 
-            PauseTransition pt = new PauseTransition(Duration.seconds(0.1));
-            pt.setOnFinished(ev -> {
+        clock.schedule(DOOR_MOVE_MS, () -> {
+            synchronized (this) {
                 doorState = DoorState.OPEN;
                 pushUi();
 
                 if (afterOpen != null) {
                     afterOpen.run();
                 }
-            });
-            pt.play();
-        });
-    }
-
-    public void pushUi() {
-        Platform.runLater(() -> {
-            cabin.setCurrentFloor(currentFloor);
-
-            String directionStr;
-            if (moving && targetFloor > currentFloor) {
-                directionStr = "UP";
-            } else if (moving && targetFloor < currentFloor) {
-                directionStr = "DOWN";
-            } else {
-                directionStr = "IDLE";
-            }
-            cabin.setDirection(directionStr);
-            cabin.setDoorState(doorState);
-
-            int lobbyFloor = lobby.getTargetFloor();
-
-            DoorState lobbyDoorState =
-                    (currentFloor == lobbyFloor) ? doorState : DoorState.CLOSED;
-
-            lobby.setDoorState(lobbyDoorState);
-            lobby.setMoving(moving);
-            lobby.setFireActive(fireMode);
-
-            if (commandCenter != null) {
-                commandCenter.setCurrentFloor(currentFloor);
-
-                boolean hasTarget =
-                        moving || !hallUp.isEmpty() || !hallDown.isEmpty() || !cabinSel.isEmpty();
-
-                commandCenter.setTargetFloor(targetFloor, hasTarget);
-                commandCenter.setMoving(moving);
-                commandCenter.setDirection(directionStr);
-                commandCenter.setDoorState(doorState);
-                commandCenter.setFireMode(fireMode);
-
-                commandCenter.setPendingHallUp(Set.copyOf(hallUp));
-                commandCenter.setPendingHallDown(Set.copyOf(hallDown));
-                commandCenter.setPendingCabin(Set.copyOf(cabinSel));
             }
         });
     }
 
-    private void log(String message) {
-        System.out.println("[CTRL] " + message + " | state " + stateSummary());
-    }
+    public synchronized void pushUi() {
+        String direction;
+        if (moving && targetFloor > currentFloor) {
+            direction = "UP";
+        } else if (moving && targetFloor < currentFloor) {
+            direction = "DOWN";
+        } else {
+            direction = "IDLE";
+        }
 
-    private String stateSummary() {
-        return "curr=" + currentFloor +
-                " target=" + targetFloor +
-                " moving=" + moving +
-                " fire=" + fireMode +
-                " pending=" + pendingSummary();
-    }
+        boolean hasTarget = moving || !hallUp.isEmpty() || !hallDown.isEmpty() || !cabinSel.isEmpty();
 
-    private String pendingSummary() {
-        String up = summarizeSet(hallUp);
-        String down = summarizeSet(hallDown);
-        String cab = summarizeSet(cabinSel);
-        return "{up=" + up + ",down=" + down + ",cab=" + cab + "}";
+        ui.render(new UiSnapshot(currentFloor, targetFloor, hasTarget, moving, direction, doorState,
+                fireMode, overloaded, obstructed,
+                hallUp.mask(), hallDown.mask(), cabinSel.mask()));
     }
 
-    private String summarizeSet(Set<Integer> set) {
-        if (set.isEmpty()) return "[]";
-        return set.stream()
-                .sorted()
-                .map(String::valueOf)
-                .collect(Collectors.joining(",", "[", "]"));
+    /**
+     * Finish a log entry with the controller's state. The state is captured as
+     * numbers and floor masks here and only turned into text by the event log
+     */
+    private void log(LogEntry entry) {
+        if (!entry.isEnabled()) {
+            return;
+        }
+        entry.field("curr", currentFloor)
+                .field("target", targetFloor)
+                .field("moving", moving)
+                .field("fire", fireMode)
+                .floors("up", hallUp.mask())
+                .floors("down", hallDown.mask())
+                .floors("cab", cabinSel.mask())
+                .log();
     }
 }
-
-
-
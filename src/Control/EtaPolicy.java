@@ -0,0 +1,59 @@
+package Control;
+
+import Sim.MockSim;
+
+/**
+ * Estimated-time dispatch: every pending floor is a candidate trip, and the trip that
+ * serves the most requests per estimated millisecond wins. A trip is timed like the
+ * controller runs it: closing the doors, MockSim.TICK_MS per floor, and a full stop
+ * (ElevatorController.STOP_MS) at the target and at every floor on the way that LOOK
+ * would stop at. A request is a set bit, so a floor with a hall call and a cabin
+ * request counts twice. Ties go to the shorter trip.
+ *
+ * A moving car stops on the way like LOOK.
+ */
+final class EtaPolicy implements DispatchPolicy {
+
+    @Override
+    public int next(int floor, long hallUp, long hallDown, long cabin) {
+        long all = hallUp | hallDown | cabin;
+        if (FloorMasks.has(all, floor)) {
+            return floor;
+        }
+        int best = NONE;
+        long bestTime = 1;
+        int bestServed = 0;
+        for (long left = all; left != 0; left &= left - 1) {
+            int target = Long.numberOfTrailingZeros(left);
+            boolean up = target > floor;
+            long passed = up
+                    ? FloorMasks.atOrAbove(FloorMasks.atOrBelow(all, target - 1), floor + 1)
+                    : FloorMasks.atOrBelow(FloorMasks.atOrAbove(all, target + 1), floor - 1);
+            long stops = (passed & (cabin | (up ? hallUp : hallDown))) | FloorMasks.bit(target);
+
+            long time = ElevatorController.START_MS + Math.abs(target - floor) * MockSim.TICK_MS
+                    + Long.bitCount(stops) * ElevatorController.STOP_MS;
+            int served = Long.bitCount(hallUp & stops) + Long.bitCount(hallDown & stops) + Long.bitCount(cabin & stops);
+
+            // served / time > bestServed / bestTime, without dividing
+            long lhs = served * bestTime;
+            long rhs = bestServed * time;
+            if (lhs > rhs || (lhs == rhs && time < bestTime)) {
+                best = target;
+                bestTime = time;
+                bestServed = served;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public boolean stopsOnTheWay(int floor, int target, long hallUp, long hallDown, long cabin) {
+        return LookPolicy.stopsGoing(target > floor, floor, hallUp, hallDown, cabin);
+    }
+
+    @Override
+    public String name() {
+        return "eta";
+    }
+}
@@ -0,0 +1,55 @@
+package Control;
+
+/**
+ * Queries on floor masks, where bit f is set for floor f. Only floors 0 to 63 fit,
+ * anything outside that range is never in a mask.
+ */
+final class FloorMasks {
+
+    static final int NONE = -1;
+
+    private FloorMasks() {
+    }
+
+    static long bit(int floor) {
+        return (floor >= 0 && floor < Long.SIZE) ? 1L << floor : 0;
+    }
+
+    static boolean has(long mask, int floor) {
+        return (mask & bit(floor)) != 0;
+    }
+
+    /**
+     * @return the floors of mask at floor or above it
+     */
+    static long atOrAbove(long mask, int floor) {
+        if (floor <= 0) {
+            return mask;
+        }
+        return floor < Long.SIZE ? mask & (-1L << floor) : 0;
+    }
+
+    /**
+     * @return the floors of mask at floor or below it
+     */
+    static long atOrBelow(long mask, int floor) {
+        if (floor < 0) {
+            return 0;
+        }
+        return floor < Long.SIZE - 1 ? mask & (-1L >>> (Long.SIZE - 1 - floor)) : mask;
+    }
+
+    /**
+     * @return the lowest floor in mask, or NONE if it is empty
+     */
+    static int lowest(long mask) {
+        return mask == 0 ? NONE : Long.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * @return the highest floor in mask, or NONE if it is empty
+     */
+    static int highest(long mask) {
+        return mask == 0 ? NONE : Long.SIZE - 1 - Long.numberOfLeadingZeros(mask);
+    }
+}
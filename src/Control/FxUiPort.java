@@ -0,0 +1,154 @@
+package Control;
+
+import CabinGUI.CabinPanelAPI;
+import CabinGUI.DoorState;
+import CommandCenterGUI.CommandCenterPanelAPI;
+import LobbyGUI.LobbyPanelAPI;
+import javafx.application.Platform;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * UiPort driving the JavaFX cabin, lobby and (optional) command center panels.
+ *
+ * Renders are coalesced: render() only keeps the newest snapshot, and at most one
+ * render task is waiting on the FX thread at a time. However many snapshots arrive
+ * between two FX pulses, the panels are updated once, with the latest.
+ *
+ * Renders are also diffed: the FX thread remembers the snapshot it last showed and
+ * only calls the setters of fields that changed, so a floor tick moves the floor
+ * indicators and leaves the rest of the panels (and the pending request lists) alone.
+ * A snapshot equal to the one waiting is dropped without queueing anything.
+ */
+public class FxUiPort implements UiPort {
+    private final LobbyPanelAPI lobby;
+    private final CabinPanelAPI cabin;
+    private final CommandCenterPanelAPI commandCenter;
+
+    private final AtomicReference<UiSnapshot> latest = new AtomicReference<>();
+    private final AtomicBoolean renderQueued = new AtomicBoolean();
+
+    /**
+     * What the panels show now, only touched on the FX thread. Null until the first render
+     */
+    private UiSnapshot shown;
+    private DoorState shownLobbyDoor;
+
+    /**
+     * The lobby's moving light, kept apart from shown since requestsServed() also turns it off
+     */
+    private boolean shownLobbyMoving;
+
+    /**
+     * @param commandCenter may be null when there is no command center panel
+     */
+    public FxUiPort(LobbyPanelAPI lobby, CabinPanelAPI cabin, CommandCenterPanelAPI commandCenter) {
+        this.lobby = lobby;
+        this.cabin = cabin;
+        this.commandCenter = commandCenter;
+    }
+
+    @Override
+    public void render(UiSnapshot snapshot) {
+        if (snapshot.equals(latest.getAndSet(snapshot))) {
+            return;
+        }
+        if (renderQueued.compareAndSet(false, true)) {
+            Platform.runLater(this::renderLatest);
+        }
+    }
+
+    @Override
+    public void requestsServed(boolean up) {
+        Platform.runLater(() -> {
+            if (up) {
+                lobby.resetUpRequest();
+            } else {
+                lobby.resetDownRequest();
+            }
+            lobby.setMoving(false);
+            shownLobbyMoving = false;
+        });
+    }
+
+    private void renderLatest() {
+        // Cleared before reading, so a snapshot arriving from here on queues another render
+        renderQueued.set(false);
+        UiSnapshot s = latest.get();
+        UiSnapshot old = shown;
+        boolean all = (old == null);
+        boolean center = (commandCenter != null);
+
+        if (all || s.currentFloor() != old.currentFloor()) {
+            cabin.setCurrentFloor(s.currentFloor());
+            if (center) {
+                commandCenter.setCurrentFloor(s.currentFloor());
+            }
+        }
+        if (all || !s.direction().equals(old.direction())) {
+            cabin.setDirection(s.direction());
+            if (center) {
+                commandCenter.setDirection(s.direction());
+            }
+        }
+        if (all || s.doorState() != old.doorState()) {
+            cabin.setDoorState(s.doorState());
+            if (center) {
+                commandCenter.setDoorState(s.doorState());
+            }
+        }
+        if (all || s.overloaded() != old.overloaded()) {
+            cabin.setOverloaded(s.overloaded());
+        }
+        if (all || s.obstructed() != old.obstructed()) {
+            cabin.setObstructed(s.obstructed());
+        }
+        if (all || s.moving() != shownLobbyMoving) {
+            lobby.setMoving(s.moving());
+            shownLobbyMoving = s.moving();
+        }
+        if (center && (all || s.moving() != old.moving())) {
+            commandCenter.setMoving(s.moving());
+        }
+        if (all || s.fireMode() != old.fireMode()) {
+            lobby.setFireActive(s.fireMode());
+            if (center) {
+                commandCenter.setFireMode(s.fireMode());
+            }
+        }
+
+        // The lobby's own floor can change under us, so its door is checked every time
+        DoorState lobbyDoor = (s.currentFloor() == lobby.getTargetFloor()) ? s.doorState() : DoorState.CLOSED;
+        if (lobbyDoor != shownLobbyDoor) {
+            lobby.setDoorState(lobbyDoor);
+            shownLobbyDoor = lobbyDoor;
+        }
+
+        if (center) {
+            if (all || s.targetFloor() != old.targetFloor() || s.hasTarget() != old.hasTarget()) {
+                commandCenter.setTargetFloor(s.targetFloor(), s.hasTarget());
+            }
+            if (all || s.hallUp() != old.hallUp()) {
+                commandCenter.setPendingHallUp(floors(s.hallUp()));
+            }
+            if (all || s.hallDown() != old.hallDown()) {
+                commandCenter.setPendingHallDown(floors(s.hallDown()));
+            }
+            if (all || s.cabin() != old.cabin()) {
+                commandCenter.setPendingCabin(floors(s.cabin()));
+            }
+        }
+        shown = s;
+    }
+
+    private static Set<Integer> floors(long mask) {
+        Set<Integer> floors = new TreeSet<>();
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            floors.add(Long.numberOfTrailingZeros(rest));
+        }
+        return floors;
+    }
+}
@@ -0,0 +1,310 @@
+package Control;
+
+import CommandCenter.states.ElevatorMode;
+import Logging.EventLog;
+import Logging.LogEntry;
+import Logging.Logger;
+import Sim.MockSim;
+import Wiring.EventBus;
+import Wiring.Topics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GroupController
+ *
+ * Runs the cars of one building as a group. Every car keeps its own ElevatorController,
+ * EventBus and sim; the group sits on a separate hall bus carrying the lobby's
+ * UI_HALL_CALL_UP / UI_HALL_CALL_DOWN and decides which car bus each call goes to.
+ *
+ * Modes (CommandCenter.states.ElevatorMode):
+ *  - CENTRALIZED: each hall call goes to the one car with the lowest cost, see cost().
+ *    A call already assigned to a car is not handed out again, as long as the car still
+ *    has it: a car may drop a call without serving it (fire, clearAllRequests, a floor
+ *    it has no register bit for), so assignments are checked against the car first.
+ *  - INDEPENDENT: each hall call goes to every car, which answers it as if it were alone
+ *    in the building. The cars race to the same call; kept to compare against.
+ *  - FIRE: every car is put in fire mode and the hall calls assigned so far are dropped.
+ *
+ * The hall bus also carries UI_GROUP_MODE, the command center's mode switch, which
+ * SoftwareBusAdapter.groupRoutes() brings over from ELEVATOR_MODE (7, 0).
+ *
+ * Cabin selections don't pass through the group, they are published on the car's own bus.
+ * The group learns a car has served a floor from its CTRL_FLOOR_SERVED.
+ *
+ * Car buses are expected to be synchronous, so a car has taken or denied a call by the
+ * time publishing it returns. See tests.GroupDispatchBenchmark for a four car group.
+ *
+ * Calls and mode changes are handed to the cars one at a time under dispatchLock, but
+ * never while holding the group's own lock: a car's controller holds its lock while it
+ * reports CTRL_FLOOR_SERVED back to the group.
+ */
+public class GroupController {
+    private static final Logger LOG = EventLog.logger("GRP");
+
+    /**
+     * One car of the group. The hall calls the group gave it are kept here rather than read
+     * back from the controller, so a burst of calls sees its own earlier assignments
+     */
+    private static final class Car {
+        private final int id;
+        private final EventBus bus;
+        private final ElevatorController controller;
+        private long hallUp;
+        private long hallDown;
+
+        private Car(int id, EventBus bus, ElevatorController controller) {
+            this.id = id;
+            this.bus = bus;
+            this.controller = controller;
+        }
+    }
+
+    private final List<Car> cars = new ArrayList<>();
+    private ElevatorMode mode;
+
+    /**
+     * Held while calls and mode changes are published to the cars, so each is decided and
+     * delivered before the next is decided
+     */
+    private final Object dispatchLock = new Object();
+
+    /**
+     * @param hallBus the bus the lobby panels publish hall calls on, not one of the car buses
+     * @param mode    CENTRALIZED or INDEPENDENT to start in
+     */
+    public GroupController(EventBus hallBus, ElevatorMode mode) {
+        this.mode = mode;
+
+        hallBus.intChannel(Topics.UI_HALL_CALL_UP).subscribe(f -> hallCall(f, true));
+        hallBus.intChannel(Topics.UI_HALL_CALL_DOWN).subscribe(f -> hallCall(f, false));
+        hallBus.intChannel(Topics.UI_GROUP_MODE).subscribe(this::modeSelected);
+
+        log(LOG.info("Group controller booted").field("mode", mode));
+    }
+
+    /**
+     * Add a car to the group
+     *
+     * @param bus        the car's own bus, shared by its controller and sim
+     * @param controller the car's controller
+     * @return the car's number in the group, from 0
+     */
+    public int addCar(EventBus bus, ElevatorController controller) {
+        synchronized (dispatchLock) {
+            Car car;
+            boolean fire;
+            synchronized (this) {
+                car = new Car(cars.size(), bus, controller);
+                cars.add(car);
+                bus.intChannel(Topics.CTRL_FLOOR_SERVED).subscribe(f -> served(car, f));
+                fire = (mode == ElevatorMode.FIRE);
+                log(LOG.info("Car added").field("car", car.id));
+            }
+            if (fire) {
+                bus.publish(Topics.UI_FIRE_TOGGLED, true);
+            }
+            return car.id;
+        }
+    }
+
+    public void setMode(ElevatorMode mode) {
+        synchronized (dispatchLock) {
+            List<Car> toggled = new ArrayList<>();
+            boolean fire = (mode == ElevatorMode.FIRE);
+            synchronized (this) {
+                if (mode == this.mode) {
+                    return;
+                }
+                if (fire || this.mode == ElevatorMode.FIRE) {
+                    for (Car car : cars) {
+                        car.hallUp = 0;
+                        car.hallDown = 0;
+                        toggled.add(car);
+                    }
+                }
+                this.mode = mode;
+                log(LOG.info("Mode changed").field("mode", mode));
+            }
+            for (Car car : toggled) {
+                car.bus.publish(Topics.UI_FIRE_TOGGLED, fire);
+            }
+        }
+    }
+
+    /**
+     * A mode picked on the command center, as its ElevatorMode ordinal
+     */
+    private void modeSelected(int ordinal) {
+        if (ordinal < 0 || ordinal >= ElevatorMode.values().length) {
+            synchronized (this) {
+                log(LOG.warn("Ignored unknown mode").field("mode", ordinal));
+            }
+            return;
+        }
+        setMode(ElevatorMode.values()[ordinal]);
+    }
+
+    public synchronized ElevatorMode getMode() {
+        return mode;
+    }
+
+    public synchronized int carCount() {
+        return cars.size();
+    }
+
+    public synchronized ElevatorController car(int id) {
+        return cars.get(id).controller;
+    }
+
+    /**
+     * @return the up hall calls assigned to a car and not yet served, bit f set for floor f
+     */
+    public synchronized long hallUpMask(int id) {
+        return cars.get(id).hallUp;
+    }
+
+    /**
+     * @return the down hall calls assigned to a car and not yet served, bit f set for floor f
+     */
+    public synchronized long hallDownMask(int id) {
+        return cars.get(id).hallDown;
+    }
+
+    private void hallCall(int floor, boolean up) {
+        Topics topic = up ? Topics.UI_HALL_CALL_UP : Topics.UI_HALL_CALL_DOWN;
+        synchronized (dispatchLock) {
+            List<Car> assigned;
+            synchronized (this) {
+                assigned = assign(floor, up);
+            }
+            for (Car car : assigned) {
+                car.bus.publish(topic, floor);
+            }
+        }
+    }
+
+    /**
+     * Pick the cars a hall call goes to and record it as theirs, callers hold the lock
+     */
+    private List<Car> assign(int floor, boolean up) {
+        switch (mode) {
+            case FIRE -> log(LOG.info("Denied hall call (fire)").field("floor", floor));
+            case INDEPENDENT -> {
+                return new ArrayList<>(cars);
+            }
+            case CENTRALIZED -> {
+                long bit = FloorMasks.bit(floor);
+                for (Car car : cars) {
+                    reconcile(car);
+                }
+                Car best = null;
+                long bestCost = Long.MAX_VALUE;
+                for (Car car : cars) {
+                    if (!car.controller.isAccepting()) {
+                        continue;
+                    }
+                    if (((up ? car.hallUp : car.hallDown) & bit) != 0) {
+                        log(LOG.debug("Hall call already assigned").field("floor", floor).field("car", car.id));
+                        return List.of();
+                    }
+                    long cost = cost(car, floor, up);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        best = car;
+                    }
+                }
+                if (best == null) {
+                    log(LOG.info("Denied hall call (no car accepting)").field("floor", floor));
+                    return List.of();
+                }
+                if (up) {
+                    best.hallUp |= bit;
+                } else {
+                    best.hallDown |= bit;
+                }
+                log(LOG.info("Hall call assigned").field("floor", floor).field("up", up)
+                        .field("car", best.id).field("costMs", bestCost));
+                return List.of(best);
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * The cost of giving a hall call to a car, in estimated milliseconds until the car
+     * reaches the caller plus the delay the call adds to the car's other stops:
+     *  - time to arrival: a moving car stops on the way for a call ahead going its way,
+     *    otherwise it finishes its trip first and comes back from its target. A car at rest
+     *    leaves after closing its doors. One floor takes MockSim.TICK_MS.
+     *  - load: every other stop the car has pending costs ElevatorController.STOP_MS.
+     *  - direction: a call the moving car won't pass in its travel direction costs a
+     *    reversal, one more ElevatorController.STOP_MS.
+     */
+    private long cost(Car car, int floor, boolean up) {
+        ElevatorController c = car.controller;
+        int at = c.getCurrentFloor();
+        long pending = c.pendingMask() | car.hallUp | car.hallDown;
+
+        long eta;
+        if (c.isMoving()) {
+            int target = c.getTargetFloor();
+            pending &= ~FloorMasks.bit(target);
+            eta = Math.abs(target - at) * MockSim.TICK_MS + ElevatorController.STOP_MS + Math.abs(floor - target) * MockSim.TICK_MS;
+
+            boolean goingUp = target > at;
+            boolean ahead = goingUp ? floor > at : floor < at;
+            boolean onTheWay = goingUp ? floor < target : floor > target;
+            if (ahead && up == goingUp && onTheWay) {
+                eta = Math.abs(floor - at) * MockSim.TICK_MS;
+            } else if (!ahead || up != goingUp) {
+                eta += ElevatorController.STOP_MS;
+            }
+        } else {
+            eta = (floor == at ? 0 : ElevatorController.START_MS) + Math.abs(floor - at) * MockSim.TICK_MS;
+        }
+        return eta + Long.bitCount(pending & ~FloorMasks.bit(floor)) * ElevatorController.STOP_MS;
+    }
+
+    /**
+     * Forget the calls assigned to a car that it no longer has pending, callers hold the lock
+     */
+    private void reconcile(Car car) {
+        long up = car.hallUp & car.controller.hallUpMask();
+        long down = car.hallDown & car.controller.hallDownMask();
+        if (up != car.hallUp || down != car.hallDown) {
+            log(LOG.debug("Hall calls dropped by car").field("car", car.id)
+                    .floors("upDropped", car.hallUp & ~up).floors("downDropped", car.hallDown & ~down));
+            car.hallUp = up;
+            car.hallDown = down;
+        }
+    }
+
+    private synchronized void served(Car car, int floor) {
+        long bit = FloorMasks.bit(floor);
+        if (((car.hallUp | car.hallDown) & bit) != 0) {
+            car.hallUp &= ~bit;
+            car.hallDown &= ~bit;
+            log(LOG.debug("Hall call served").field("floor", floor).field("car", car.id));
+        }
+    }
+
+    /**
+     * Finish a log entry with the hall calls assigned across the group, callers hold the lock.
+     * One field per direction whatever the number of cars, which car has a call is logged
+     * when it is assigned
+     */
+    private void log(LogEntry entry) {
+        if (!entry.isEnabled()) {
+            return;
+        }
+        long up = 0;
+        long down = 0;
+        for (Car car : cars) {
+            up |= car.hallUp;
+            down |= car.hallDown;
+        }
+        entry.floors("hallUp", up).floors("hallDown", down).log();
+    }
+}
@@ -0,0 +1,20 @@
+package Control;
+
+/**
+ * UiPort for controllers running without a display, everything is dropped
+ */
+final class HeadlessUiPort implements UiPort {
+
+    static final HeadlessUiPort INSTANCE = new HeadlessUiPort();
+
+    private HeadlessUiPort() {
+    }
+
+    @Override
+    public void render(UiSnapshot snapshot) {
+    }
+
+    @Override
+    public void requestsServed(boolean up) {
+    }
+}
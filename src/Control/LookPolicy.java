@@ -0,0 +1,57 @@
+package Control;
+
+/**
+ * LOOK collective control: keep going the way the car is going while anyone ahead
+ * wants to go that way too, then turn.
+ *  1. the nearest cabin request or same-direction hall call ahead (or here)
+ *  2. else the farthest opposite-direction hall call ahead, where the sweep turns
+ *  3. else the same in the other direction, which reverses the sweep
+ *
+ * A moving car stops on the way for cabin requests and hall calls going its way.
+ */
+final class LookPolicy implements DispatchPolicy {
+
+    /**
+     * The direction of the current sweep, kept while idle so the next sweep starts the same way
+     */
+    private boolean sweepUp = true;
+
+    @Override
+    public int next(int floor, long hallUp, long hallDown, long cabin) {
+        for (int turn = 0; turn < 2; turn++) {
+            int next = sweepUp
+                    ? FloorMasks.lowest(FloorMasks.atOrAbove(hallUp | cabin, floor))
+                    : FloorMasks.highest(FloorMasks.atOrBelow(hallDown | cabin, floor));
+            if (next == NONE) {
+                next = sweepUp
+                        ? FloorMasks.highest(FloorMasks.atOrAbove(hallDown, floor))
+                        : FloorMasks.lowest(FloorMasks.atOrBelow(hallUp, floor));
+            }
+            if (next != NONE) {
+                if (next != floor) {
+                    sweepUp = next > floor;
+                }
+                return next;
+            }
+            sweepUp = !sweepUp;
+        }
+        return NONE;
+    }
+
+    @Override
+    public boolean stopsOnTheWay(int floor, int target, long hallUp, long hallDown, long cabin) {
+        return stopsGoing(target > floor, floor, hallUp, hallDown, cabin);
+    }
+
+    /**
+     * @return true if floor has a cabin request or a hall call going the car's way
+     */
+    static boolean stopsGoing(boolean up, int floor, long hallUp, long hallDown, long cabin) {
+        return FloorMasks.has(cabin | (up ? hallUp : hallDown), floor);
+    }
+
+    @Override
+    public String name() {
+        return "look";
+    }
+}
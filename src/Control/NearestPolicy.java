@@ -0,0 +1,32 @@
+package Control;
+
+/**
+ * Nearest request first, in any direction. Simple, but far floors starve
+ * and the car zig-zags under load
+ */
+final class NearestPolicy implements DispatchPolicy {
+
+    @Override
+    public int next(int floor, long hallUp, long hallDown, long cabin) {
+        long all = hallUp | hallDown | cabin;
+        int below = FloorMasks.highest(FloorMasks.atOrBelow(all, floor));
+        int above = FloorMasks.lowest(FloorMasks.atOrAbove(all, floor));
+        if (below == NONE) {
+            return above;
+        }
+        if (above == NONE) {
+            return below;
+        }
+        return (floor - below <= above - floor) ? below : above;
+    }
+
+    @Override
+    public boolean stopsOnTheWay(int floor, int target, long hallUp, long hallDown, long cabin) {
+        return false;
+    }
+
+    @Override
+    public String name() {
+        return "nearest";
+    }
+}
@@ -0,0 +1,51 @@
+package Control;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The pending requests of one kind (hall up, hall down or cabin) as a bitmask in one
+ * AtomicLong, bit f set for floor f. Floors 0 to 63 fit, which covers a zone.
+ *
+ * Adding and removing never lock or allocate, and mask() is a single read that gives
+ * a consistent view of every floor at once. Queries like the nearest request above a
+ * floor are a few bit operations on that mask (see FloorMasks).
+ *
+ * This makes scheduling cheap, not constant time: EtaPolicy still times one trip per
+ * pending floor, and a moving car is checked for a stop at each floor ahead of it.
+ * Both loops are bounded by the 64 floors a mask holds.
+ */
+final class RequestRegister {
+
+    private final AtomicLong floors = new AtomicLong();
+
+    /**
+     * @return false if the floor does not fit in the register
+     */
+    boolean add(int floor) {
+        long bit = FloorMasks.bit(floor);
+        if (bit == 0) {
+            return false;
+        }
+        floors.accumulateAndGet(bit, (mask, b) -> mask | b);
+        return true;
+    }
+
+    void remove(int floor) {
+        floors.accumulateAndGet(~FloorMasks.bit(floor), (mask, keep) -> mask & keep);
+    }
+
+    void clear() {
+        floors.set(0);
+    }
+
+    boolean isEmpty() {
+        return floors.get() == 0;
+    }
+
+    /**
+     * @return every pending floor, bit f set for floor f
+     */
+    long mask() {
+        return floors.get();
+    }
+}
@@ -0,0 +1,32 @@
+package Control;
+
+/**
+ * Where ElevatorController sends what the panels should show. The controller never
+ * touches a UI toolkit itself, so it runs the same with the JavaFX panels
+ * (FxUiPort) or with no display at all (headless()).
+ *
+ * Both methods may be called on any thread and must not block.
+ */
+public interface UiPort {
+
+    /**
+     * Show a new state. A port may skip snapshots that are overtaken by a newer one
+     * before it gets to render them
+     */
+    void render(UiSnapshot snapshot);
+
+    /**
+     * The car served its floor and leaves in one direction, clear that direction's hall
+     * call lamp. The other one stays lit until the car comes back going that way
+     *
+     * @param up true if the up call was served, false for the down call
+     */
+    void requestsServed(boolean up);
+
+    /**
+     * A port that shows nothing, for running controllers without a display
+     */
+    static UiPort headless() {
+        return HeadlessUiPort.INSTANCE;
+    }
+}
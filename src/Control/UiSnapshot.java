@@ -0,0 +1,21 @@
+package Control;
+
+import CabinGUI.DoorState;
+
+/**
+ * What the panels show about one car, taken by the controller at one instant.
+ * Pending requests are floor masks: bit f is set when floor f (0 to 63) is pending.
+ */
+public record UiSnapshot(int currentFloor,
+                         int targetFloor,
+                         boolean hasTarget,
+                         boolean moving,
+                         String direction,
+                         DoorState doorState,
+                         boolean fireMode,
+                         boolean overloaded,
+                         boolean obstructed,
+                         long hallUp,
+                         long hallDown,
+                         long cabin) {
+}
@@ -6,7 +6,6 @@ import javafx.scene.Scene;
 import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
 
-import Wiring.EventBus;
 import Wiring.InMemoryEventBus;
 import Wiring.Topics;
 import Control.ElevatorController;
@@ -17,7 +16,7 @@ import CommandCenterGUI.CommandCenterPanel;
 import Sim.MockSim;   // <<-- restore this
 
 public class DemoSystemApp extends Application {
-    private EventBus bus;
+    private InMemoryEventBus bus;
     private LobbyPanel lobbyPanel;
     private CabinPanel cabinPanel;
     private CommandCenterPanel commandCenterPanel;
@@ -42,7 +41,8 @@ public class DemoSystemApp extends Application {
     }
 
     private void bootstrapCoreComponents() {
-        bus = new InMemoryEventBus();
+        // Asynchronous so the sim ticker never waits on controller, sound or UI work
+        bus = InMemoryEventBus.async();
         lobbyPanel = new LobbyPanel();
         lobbyPanel.setSystemMode(true);
         cabinPanel = new CabinPanel();
@@ -73,8 +73,9 @@ public class DemoSystemApp extends Application {
     }
 
     private void bootstrapDomainComponents() {
-        controller = new ElevatorController(bus, lobbyPanel, cabinPanel, commandCenterPanel);
-        simulator = new MockSim(bus);
+        // On lanes of their own, each sees the events it follows in publish order
+        controller = new ElevatorController(bus.subscriber(), lobbyPanel, cabinPanel, commandCenterPanel);
+        simulator = new MockSim(bus.subscriber());
 
         commandCenterPanel.setOnClearRequests(controller::clearAllRequests);
         lobbyPanel.setOnViewingFloorChanged(controller::pushUi);
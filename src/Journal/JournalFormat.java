@@ -0,0 +1,93 @@
+package Journal;
+
+import Wiring.Topics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * The layout of a journal directory, shared by the writer and the replayer.
+ *
+ * A journal is a directory of segment files named segment-00000.jnl, segment-00001.jnl...
+ * Every segment is SEGMENT_BYTES long and starts with a HEADER_BYTES header:
+ *   int MAGIC, int VERSION, int RECORD_BYTES, int topic count, then every
+ *   Wiring.Topics name as a short length and UTF-8 bytes, in ordinal order
+ * so a journal recorded before Topics changed still replays by name.
+ *
+ * After the header come fixed RECORD_BYTES records:
+ *   long time      Timestamps.now() when the record was taken
+ *   int  type      EVENT or MESSAGE, written last, 0 marks the end of the data
+ *   EVENT:   int topic ordinal, int payload kind (Topics.Payload ordinal), int value
+ *   MESSAGE: int topic, int subtopic, int b1, int b2, int b3, int b4
+ */
+final class JournalFormat {
+
+    static final int MAGIC = 0x4A524E4C;
+    static final int VERSION = 1;
+
+    static final int SEGMENT_BYTES = 16 * 1024 * 1024;
+    static final int HEADER_BYTES = 4096;
+    static final int RECORD_BYTES = 40;
+
+    static final int TYPE_END = 0;
+    static final int TYPE_EVENT = 1;
+    static final int TYPE_MESSAGE = 2;
+
+    /**
+     * Where in a record the type sits, relative to the record's start
+     */
+    static final int TYPE_OFFSET = 8;
+
+    /**
+     * Where in a record the fields after the type start
+     */
+    static final int FIELDS_OFFSET = 12;
+
+    private JournalFormat() {
+    }
+
+    static Path segment(Path directory, int index) {
+        return directory.resolve(String.format("segment-%05d.jnl", index));
+    }
+
+    static void writeHeader(ByteBuffer segment) {
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, VERSION);
+        segment.putInt(8, RECORD_BYTES);
+        Topics[] topics = Topics.values();
+        segment.putInt(12, topics.length);
+        int p = 16;
+        for (Topics topic : topics) {
+            byte[] name = topic.name().getBytes(StandardCharsets.UTF_8);
+            segment.putShort(p, (short) name.length);
+            segment.put(p + 2, name);
+            p += 2 + name.length;
+        }
+    }
+
+    /**
+     * Read the topic names of a segment header
+     *
+     * @return the topic recorded under each ordinal, null where this build has no such topic
+     * @throws IllegalStateException if the segment is not a journal segment this build reads
+     */
+    static Topics[] readHeader(ByteBuffer segment, Path file) {
+        if (segment.getInt(0) != MAGIC || segment.getInt(4) != VERSION || segment.getInt(8) != RECORD_BYTES) {
+            throw new IllegalStateException(file + " is not a version " + VERSION + " journal segment");
+        }
+        Topics[] recorded = new Topics[segment.getInt(12)];
+        int p = 16;
+        for (int i = 0; i < recorded.length; i++) {
+            byte[] name = new byte[segment.getShort(p)];
+            segment.get(p + 2, name);
+            p += 2 + name.length;
+            try {
+                recorded[i] = Topics.valueOf(new String(name, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                recorded[i] = null;
+            }
+        }
+        return recorded;
+    }
+}
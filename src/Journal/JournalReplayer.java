@@ -0,0 +1,127 @@
+package Journal;
+
+import Logging.EventLog;
+import Logging.Logger;
+import SoftwareBus.Bus.Bus;
+import SoftwareBus.Bus.Topic;
+import Wiring.EventBus;
+import Wiring.Topics;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a journal recorded by JournalWriter back into the buses, in recorded order,
+ * on the calling thread. With a synchronous InMemoryEventBus every subscriber sees
+ * exactly the recorded sequence, so a recorded shift replays the same way every time.
+ *
+ *   new JournalReplayer(Path.of("journal/shift-1")).replay(eventBus, null, 10);
+ *
+ * speed 1 keeps the recorded timing, N plays N times faster and MAX_SPEED does not
+ * wait at all.
+ */
+public class JournalReplayer {
+    private static final Logger LOG = EventLog.logger("JRNL");
+
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    /**
+     * Waits shorter than this are spun rather than parked, parking overshoots
+     */
+    private static final long SPIN_NANOS = 50_000L;
+
+    private static final Topics.Payload[] PAYLOADS = Topics.Payload.values();
+
+    private final Path directory;
+
+    public JournalReplayer(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Publish every recorded event on an EventBus and every recorded message on a Bus
+     *
+     * @param events where EVENT records are published, may be null to skip them
+     * @param bus    where MESSAGE records are published, may be null to skip them
+     * @param speed  how many times faster than recorded, MAX_SPEED for no waiting
+     * @return how many records were replayed
+     * @throws IOException if a segment cannot be read
+     */
+    public long replay(EventBus events, Bus bus, double speed) throws IOException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be positive, was " + speed);
+        }
+        long replayed = 0;
+        long firstTime = 0;
+        long startNanos = 0;
+        int[] body = new int[4];
+
+        for (int index = 0; Files.exists(JournalFormat.segment(directory, index)); index++) {
+            Path file = JournalFormat.segment(directory, index);
+            MappedByteBuffer segment;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            Topics[] recorded = JournalFormat.readHeader(segment, file);
+
+            for (int p = JournalFormat.HEADER_BYTES;
+                 p + JournalFormat.RECORD_BYTES <= segment.limit(); p += JournalFormat.RECORD_BYTES) {
+                int type = segment.getInt(p + JournalFormat.TYPE_OFFSET);
+                if (type == JournalFormat.TYPE_END) {
+                    break;
+                }
+                long time = segment.getLong(p);
+                if (replayed == 0) {
+                    firstTime = time;
+                    startNanos = System.nanoTime();
+                } else if (speed != MAX_SPEED) {
+                    waitUntil(startNanos + (long) ((time - firstTime) / speed));
+                }
+
+                int f = p + JournalFormat.FIELDS_OFFSET;
+                if (type == JournalFormat.TYPE_EVENT) {
+                    int ordinal = segment.getInt(f);
+                    Topics topic = ordinal < recorded.length ? recorded[ordinal] : null;
+                    if (events != null && topic != null) {
+                        publish(events, topic, PAYLOADS[segment.getInt(f + 4)], segment.getInt(f + 8));
+                    }
+                } else if (type == JournalFormat.TYPE_MESSAGE && bus != null) {
+                    for (int i = 0; i < 4; i++) {
+                        body[i] = segment.getInt(f + 8 + 4 * i);
+                    }
+                    bus.publish(Topic.of(segment.getInt(f), segment.getInt(f + 4)), body[0], body[1], body[2], body[3]);
+                }
+                replayed++;
+            }
+        }
+        LOG.info("Journal replayed").field("dir", directory).field("records", replayed).log();
+        return replayed;
+    }
+
+    /**
+     * Publish a recorded value the way it was recorded
+     */
+    private static void publish(EventBus events, Topics topic, Topics.Payload payload, int value) {
+        switch (payload) {
+            case INT -> events.publish(topic, value);
+            case BOOLEAN -> events.publish(topic, value != 0);
+            default -> events.publish(topic, (Object) null);
+        }
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package Journal;
+
+import Logging.EventLog;
+import Logging.Logger;
+import Metrics.Timestamps;
+import SoftwareBus.Bus.Bus;
+import SoftwareBus.Bus.Message;
+import SoftwareBus.Bus.Topic;
+import Wiring.EventBus;
+import Wiring.Topics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records bus traffic into a journal directory (see JournalFormat) for later replay
+ * with JournalReplayer.
+ *
+ * Segments are memory mapped, so appending a record is a few puts into memory and
+ * the OS writes the pages out. A background thread forces the current segment to
+ * disk every FORCE_INTERVAL_MS, and close() forces the rest. If the process dies
+ * the journal still ends cleanly: a record's type is written last, so a torn record
+ * reads as the end of the data.
+ *
+ *   JournalWriter journal = JournalWriter.open(Path.of("journal/shift-1"));
+ *   journal.record(eventBus);
+ *   journal.record(bus, Topic.of(1, 0), Topic.of(5, 0));
+ *
+ * Appending is synchronized, subscribers on any thread can record.
+ */
+public class JournalWriter implements AutoCloseable {
+    private static final Logger LOG = EventLog.logger("JRNL");
+
+    private static final long FORCE_INTERVAL_MS = 1000;
+
+    private final Path directory;
+    private final ScheduledExecutorService forcer;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+    private int position;
+    private long records;
+    private boolean closed;
+
+    private JournalWriter(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        nextSegment();
+
+        this.forcer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "JournalWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        forcer.scheduleWithFixedDelay(this::force, FORCE_INTERVAL_MS, FORCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start a journal in a directory, which must not hold a journal already
+     *
+     * @throws IOException if the directory cannot be created or already holds segments
+     */
+    public static JournalWriter open(Path directory) throws IOException {
+        if (Files.exists(JournalFormat.segment(directory, 0))) {
+            throw new IOException(directory + " already holds a journal");
+        }
+        return new JournalWriter(directory);
+    }
+
+    /**
+     * Record every topic of an EventBus from now on. Int and boolean topics are
+     * recorded through their channels, so nothing is boxed
+     */
+    public void record(EventBus bus) {
+        for (Topics topic : Topics.values()) {
+            int ordinal = topic.ordinal();
+            int kind = topic.payload().ordinal();
+            switch (topic.payload()) {
+                case INT -> bus.intChannel(topic).subscribe(v -> appendEvent(ordinal, kind, v));
+                case BOOLEAN -> bus.booleanChannel(topic).subscribe(v -> appendEvent(ordinal, kind, v ? 1 : 0));
+                default -> bus.subscribe(topic, e -> appendEvent(ordinal, kind, 0));
+            }
+        }
+        LOG.info("Recording every EventBus topic").field("dir", directory).log();
+    }
+
+    /**
+     * Record the messages of some software bus topics from now on
+     *
+     * @param topics the topics to record, subtopic 0 meaning every subtopic of the topic
+     */
+    public void record(Bus bus, Topic... topics) {
+        for (Topic t : topics) {
+            bus.subscribe(t, this::appendMessage);
+        }
+        LOG.info("Recording software bus topics").field("topics", topics.length).field("dir", directory).log();
+    }
+
+    /**
+     * @return how many records were appended so far
+     */
+    public synchronized long records() {
+        return records;
+    }
+
+    private synchronized void appendEvent(int ordinal, int kind, int value) {
+        int p = claim();
+        if (p < 0) {
+            return;
+        }
+        segment.putLong(p, Timestamps.now());
+        segment.putInt(p + JournalFormat.FIELDS_OFFSET, ordinal);
+        segment.putInt(p + JournalFormat.FIELDS_OFFSET + 4, kind);
+        segment.putInt(p + JournalFormat.FIELDS_OFFSET + 8, value);
+        segment.putInt(p + JournalFormat.TYPE_OFFSET, JournalFormat.TYPE_EVENT);
+    }
+
+    private synchronized void appendMessage(Message m) {
+        int p = claim();
+        if (p < 0) {
+            return;
+        }
+        segment.putLong(p, Timestamps.now());
+        int f = p + JournalFormat.FIELDS_OFFSET;
+        segment.putInt(f, m.topicInt());
+        segment.putInt(f + 4, m.subtopicInt());
+        segment.putInt(f + 8, m.bodyOne());
+        segment.putInt(f + 12, m.bodyTwo());
+        segment.putInt(f + 16, m.bodyThree());
+        segment.putInt(f + 20, m.bodyFour());
+        segment.putInt(p + JournalFormat.TYPE_OFFSET, JournalFormat.TYPE_MESSAGE);
+    }
+
+    /**
+     * Reserve the next record, moving to a new segment when this one is full.
+     * Callers hold the lock
+     *
+     * @return the record's position in the current segment, -1 once closed
+     */
+    private int claim() {
+        if (closed) {
+            return -1;
+        }
+        if (position + JournalFormat.RECORD_BYTES > JournalFormat.SEGMENT_BYTES) {
+            try {
+                nextSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException("journal segment " + (segmentIndex + 1) + " in " + directory, e);
+            }
+        }
+        int p = position;
+        position += JournalFormat.RECORD_BYTES;
+        records++;
+        return p;
+    }
+
+    private void nextSegment() throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+        }
+        segmentIndex++;
+        channel = FileChannel.open(JournalFormat.segment(directory, segmentIndex),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, JournalFormat.SEGMENT_BYTES);
+        JournalFormat.writeHeader(segment);
+        position = JournalFormat.HEADER_BYTES;
+    }
+
+    /**
+     * Force the current segment to disk without holding up appends while the OS writes
+     */
+    private void force() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            current = segment;
+        }
+        current.force();
+    }
+
+    /**
+     * Stop recording and force everything to disk. Subscriptions stay on the buses
+     * but record nothing more
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        forcer.shutdown();
+        segment.force();
+        channel.close();
+        LOG.info("Journal closed").field("dir", directory).field("records", records).log();
+    }
+}
@@ -0,0 +1,219 @@
+package Logging;
+
+import Metrics.Meter;
+import Metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The process wide event log. Components log through a Logger:
+ *
+ *   private static final Logger LOG = EventLog.logger("CTRL");
+ *   LOG.info("Hall UP request received").field("floor", f).log();
+ *
+ * Logging copies the entry's captured fields into a preallocated ring and returns,
+ * it never formats, never does I/O and never blocks. One daemon thread drains the
+ * ring in order, formats each entry and writes it to the log file and, from the
+ * console level up, to the console in the usual "[CTRL] ..." form (System.err
+ * from WARN up).
+ * When the ring is full new entries are dropped and counted rather than slowing
+ * down the thread logging them.
+ *
+ * Configured with system properties:
+ *   eventlog.level    lowest level recorded at all, DEBUG when there is a file and
+ *                     the console level otherwise
+ *   eventlog.console  lowest level echoed to System.out, INFO by default
+ *   eventlog.file     the file entries are appended to, e.g. elevator-events.log,
+ *                     console only by default (or "none")
+ */
+public final class EventLog {
+
+    private static final Level CONSOLE_LEVEL = Level.parse(System.getProperty("eventlog.console"), Level.INFO);
+    private static final String FILE = System.getProperty("eventlog.file", "none");
+    static final Level LEVEL = Level.parse(System.getProperty("eventlog.level"),
+            isNone(FILE) ? CONSOLE_LEVEL : Level.DEBUG);
+
+    private static final int CAPACITY = 4096;
+
+    /**
+     * How long the drainer parks when the ring is empty. Entries are not urgent,
+     * so it is never woken early
+     */
+    private static final long IDLE_PARK_NANOS = 2_000_000L;
+
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    /**
+     * Level names padded to one width, indexed by ordinal
+     */
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO ", "WARN ", "ERROR"};
+
+    private static final EventLog GLOBAL = new EventLog();
+
+    /**
+     * One reusable entry of the ring, visible to the drainer once sequence is written
+     */
+    private static final class Slot {
+        private volatile long sequence = -1;
+        private final LogEntry entry = new LogEntry(true);
+    }
+
+    private final Slot[] slots = new Slot[CAPACITY];
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+
+    private final Meter dropped = MetricsRegistry.global().meter("eventlog.dropped");
+    private long droppedReported;
+
+    private final Writer file;
+    private final StringBuilder line = new StringBuilder(256);
+
+    private EventLog() {
+        for (int i = 0; i < CAPACITY; i++) {
+            slots[i] = new Slot();
+        }
+        this.file = open(FILE);
+
+        Thread drainer = new Thread(this::drainLoop, "EventLog");
+        drainer.setDaemon(true);
+        drainer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drainRemaining, "EventLog-Flush"));
+    }
+
+    static EventLog global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Get a logger for a component
+     *
+     * @param source the tag printed with its entries, padded to 4 characters like "SIM "
+     */
+    public static Logger logger(String source) {
+        return new Logger(String.format("%-4s", source));
+    }
+
+    private static boolean isNone(String path) {
+        return path.isBlank() || path.equalsIgnoreCase("none");
+    }
+
+    private static Writer open(String path) {
+        if (isNone(path)) {
+            return null;
+        }
+        try {
+            return Files.newBufferedWriter(Path.of(path), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("[LOG ] cannot open " + path + ", logging to the console only: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Copy an entry into the ring, or drop it if the ring is full
+     */
+    void append(LogEntry entry) {
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed >= CAPACITY) {
+                dropped.mark();
+                return;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+
+        Slot slot = slots[(int) (seq % CAPACITY)];
+        slot.entry.copyFrom(entry);
+        slot.sequence = seq;
+    }
+
+    private void drainLoop() {
+        while (true) {
+            if (!drainAvailable()) {
+                flush();
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Write every entry already committed, in order
+     *
+     * @return false if there was nothing to write
+     */
+    private synchronized boolean drainAvailable() {
+        long next = consumed;
+        Slot slot = slots[(int) (next % CAPACITY)];
+        if (slot.sequence != next) {
+            reportDropped();
+            return false;
+        }
+        do {
+            write(slot.entry);
+            next++;
+            consumed = next;
+            slot = slots[(int) (next % CAPACITY)];
+        } while (slot.sequence == next);
+        return true;
+    }
+
+    private void drainRemaining() {
+        while (drainAvailable()) {
+            // Keep going until the ring is empty
+        }
+        flush();
+    }
+
+    private void write(LogEntry entry) {
+        line.setLength(0);
+        line.append('[').append(entry.source).append("] ");
+        entry.format(line);
+        for (int i = 0; i < entry.fieldCount; i++) {
+            entry.refs[i] = null;
+        }
+
+        if (entry.level.compareTo(CONSOLE_LEVEL) >= 0) {
+            (entry.level.compareTo(Level.WARN) >= 0 ? System.err : System.out).println(line);
+        }
+        if (file != null) {
+            try {
+                file.append(TIME.format(Instant.ofEpochMilli(entry.timeMillis)))
+                        .append(' ').append(LEVEL_NAMES[entry.level.ordinal()]).append(' ')
+                        .append(line).append('\n');
+            } catch (IOException e) {
+                System.err.println("[LOG ] write to " + FILE + " failed: " + e);
+            }
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.getCount();
+        if (total != droppedReported) {
+            System.err.println("[LOG ] event log full, dropped " + (total - droppedReported) + " entries");
+            droppedReported = total;
+        }
+    }
+
+    private synchronized void flush() {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.flush();
+        } catch (IOException e) {
+            System.err.println("[LOG ] flush of " + FILE + " failed: " + e);
+        }
+    }
+}
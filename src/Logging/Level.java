@@ -0,0 +1,26 @@
+package Logging;
+
+/**
+ * How much an entry of the event log matters, lowest first
+ */
+public enum Level {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR;
+
+    /**
+     * Parse a level named in a system property, falling back when it is unset or unknown
+     */
+    static Level parse(String name, Level fallback) {
+        if (name == null) {
+            return fallback;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("[LOG ] ignoring unknown level '" + name + "', using " + fallback);
+            return fallback;
+        }
+    }
+}
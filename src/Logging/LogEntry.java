@@ -0,0 +1,160 @@
+package Logging;
+
+/**
+ * An event log entry being put together: a constant message plus key=value fields.
+ *
+ * Field values are captured as they are when added (numbers, booleans, floor sets
+ * as bit masks) and only turned into text by the event log's drainer thread. Object
+ * values are kept by reference and printed later, so only pass immutable ones such
+ * as Strings and enum constants.
+ *
+ * Each thread reuses one entry, so finish an entry with log() before starting the
+ * next and do not log from inside the expressions that compute its fields.
+ */
+public class LogEntry {
+
+    /**
+     * How many fields an entry keeps, later ones are dropped
+     */
+    static final int MAX_FIELDS = 12;
+
+    static final byte KIND_LONG = 0;
+    static final byte KIND_BOOLEAN = 1;
+    static final byte KIND_FLOORS = 2;
+    static final byte KIND_REF = 3;
+
+    /**
+     * Handed out for levels that are off, ignores everything
+     */
+    static final LogEntry DISABLED = new LogEntry(false);
+
+    private static final ThreadLocal<LogEntry> CURRENT = ThreadLocal.withInitial(() -> new LogEntry(true));
+
+    private final boolean enabled;
+
+    long timeMillis;
+    Level level;
+    String source;
+    String message;
+    int fieldCount;
+    final String[] keys = new String[MAX_FIELDS];
+    final byte[] kinds = new byte[MAX_FIELDS];
+    final long[] values = new long[MAX_FIELDS];
+    final Object[] refs = new Object[MAX_FIELDS];
+
+    LogEntry(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    static LogEntry start(Level level, String source, String message) {
+        LogEntry entry = CURRENT.get();
+        entry.timeMillis = System.currentTimeMillis();
+        entry.level = level;
+        entry.source = source;
+        entry.message = message;
+        entry.fieldCount = 0;
+        return entry;
+    }
+
+    /**
+     * False for entries of a level that is off, so callers can skip capturing
+     * fields that cost something to compute
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public LogEntry field(String key, long value) {
+        return add(key, KIND_LONG, value, null);
+    }
+
+    public LogEntry field(String key, boolean value) {
+        return add(key, KIND_BOOLEAN, value ? 1 : 0, null);
+    }
+
+    /**
+     * @param value printed with String.valueOf by the drainer, so it must not change afterwards
+     */
+    public LogEntry field(String key, Object value) {
+        return add(key, KIND_REF, 0, value);
+    }
+
+    /**
+     * A set of floors 0 to 63, printed sorted like [1,4,7]
+     *
+     * @param mask bit f is set for every floor f in the set
+     */
+    public LogEntry floors(String key, long mask) {
+        return add(key, KIND_FLOORS, mask, null);
+    }
+
+    /**
+     * Hand the entry to the event log. Never blocks, the entry is dropped and counted
+     * if the log is full
+     */
+    public void log() {
+        if (!enabled) {
+            return;
+        }
+        EventLog.global().append(this);
+        for (int i = 0; i < fieldCount; i++) {
+            refs[i] = null;
+        }
+    }
+
+    private LogEntry add(String key, byte kind, long value, Object ref) {
+        if (!enabled || fieldCount == MAX_FIELDS) {
+            return this;
+        }
+        keys[fieldCount] = key;
+        kinds[fieldCount] = kind;
+        values[fieldCount] = value;
+        refs[fieldCount] = ref;
+        fieldCount++;
+        return this;
+    }
+
+    /**
+     * Copy another entry's contents into this one, used to move entries into the ring
+     */
+    void copyFrom(LogEntry other) {
+        timeMillis = other.timeMillis;
+        level = other.level;
+        source = other.source;
+        message = other.message;
+        fieldCount = other.fieldCount;
+        System.arraycopy(other.keys, 0, keys, 0, fieldCount);
+        System.arraycopy(other.kinds, 0, kinds, 0, fieldCount);
+        System.arraycopy(other.values, 0, values, 0, fieldCount);
+        System.arraycopy(other.refs, 0, refs, 0, fieldCount);
+    }
+
+    /**
+     * Append this entry's message and fields as text, only called by the drainer
+     */
+    void format(StringBuilder out) {
+        out.append(message);
+        for (int i = 0; i < fieldCount; i++) {
+            out.append(' ').append(keys[i]).append('=');
+            switch (kinds[i]) {
+                case KIND_LONG -> out.append(values[i]);
+                case KIND_BOOLEAN -> out.append(values[i] != 0);
+                case KIND_FLOORS -> appendFloors(out, values[i]);
+                default -> out.append(refs[i]);
+            }
+        }
+    }
+
+    private static void appendFloors(StringBuilder out, long mask) {
+        out.append('[');
+        boolean first = true;
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            if (!first) {
+                out.append(',');
+            }
+            out.append(Long.numberOfTrailingZeros(rest));
+            first = false;
+        }
+        out.append(']');
+    }
+}
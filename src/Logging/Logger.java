@@ -0,0 +1,47 @@
+package Logging;
+
+/**
+ * Where one component writes to the event log, e.g. EventLog.logger("CTRL").
+ * Entries below the recorded level cost one comparison, nothing is captured.
+ */
+public final class Logger {
+    private final String source;
+
+    Logger(String source) {
+        this.source = source;
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(EventLog.LEVEL) >= 0;
+    }
+
+    public LogEntry debug(String message) {
+        return at(Level.DEBUG, message);
+    }
+
+    public LogEntry info(String message) {
+        return at(Level.INFO, message);
+    }
+
+    public LogEntry warn(String message) {
+        return at(Level.WARN, message);
+    }
+
+    public LogEntry error(String message) {
+        return at(Level.ERROR, message);
+    }
+
+    /**
+     * Start an entry, add its fields and finish it with log()
+     *
+     * @param level   how much the entry matters
+     * @param message what happened, a constant rather than a string built per call
+     * @return this thread's entry, or an entry that ignores everything if the level is off
+     */
+    public LogEntry at(Level level, String message) {
+        if (!isEnabled(level)) {
+            return LogEntry.DISABLED;
+        }
+        return LogEntry.start(level, source, message);
+    }
+}
@@ -6,7 +6,6 @@ import javafx.stage.Stage;
 
 import LobbyGUI.LobbyPanel;
 import CabinGUI.CabinPanel;
-import Wiring.EventBus;
 import Wiring.InMemoryEventBus;
 import Wiring.Topics;
 import Control.ElevatorController;
@@ -17,7 +16,8 @@ public class Main extends Application {
     @Override
     public void start(Stage stage) {
         // --- Bus ---
-        EventBus bus = new InMemoryEventBus();
+        // Asynchronous so the sim ticker never waits on controller, sound or UI work
+        InMemoryEventBus bus = InMemoryEventBus.async();
 
         // --- UI Panels ---
         LobbyPanel lobby = new LobbyPanel();
@@ -40,8 +40,9 @@ public class Main extends Application {
         );
 
         // --- Core Logic + Simulation ---
-        ElevatorController controller = new ElevatorController(bus, lobby, cabin);
-        MockSim sim = new MockSim(bus);
+        // On lanes of their own, each sees the events it follows in publish order
+        ElevatorController controller = new ElevatorController(bus.subscriber(), lobby, cabin);
+        MockSim sim = new MockSim(bus.subscriber());
 
         // --- Layout ---
         HBox root = new HBox(20, lobby, cabin);
@@ -0,0 +1,24 @@
+package Metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value read on demand, such as the depth of a queue
+ */
+public final class Gauge implements GaugeMBean {
+    private final LongSupplier source;
+
+    Gauge(LongSupplier source) {
+        this.source = source;
+    }
+
+    @Override
+    public long getValue() {
+        return source.getAsLong();
+    }
+
+    @Override
+    public String toString() {
+        return "value=" + getValue();
+    }
+}
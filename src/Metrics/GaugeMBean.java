@@ -0,0 +1,8 @@
+package Metrics;
+
+/**
+ * JMX view of a Gauge
+ */
+public interface GaugeMBean {
+    long getValue();
+}
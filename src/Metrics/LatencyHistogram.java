@@ -0,0 +1,150 @@
+package Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds with log-linear buckets, in the style
+ * of HdrHistogram: every power of two is split into SUB_BUCKETS linear buckets,
+ * so any value is known to within 1/SUB_BUCKETS (12.5%) from 1 ns to centuries.
+ * <p>
+ * record() is lock free and allocation free, it is one atomic add on the bucket
+ * and a striped add on the total, the count is summed from the buckets when read.
+ * Readers see a slightly moving picture while recording goes on, which is fine
+ * for monitoring.
+ */
+public final class LatencyHistogram implements LatencyHistogramMBean {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Values below this have a bucket each
+     */
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * Record one duration, negative durations count as 0
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(v));
+        total.add(v);
+        long seen;
+        while (v > (seen = max.get()) && !max.compareAndSet(seen, v)) {
+            // Lost a race with a larger or equal value, look again
+        }
+    }
+
+    static int bucket(long v) {
+        if (v < LINEAR_LIMIT) {
+            return (int) v;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * The middle of the range of values a bucket holds
+     */
+    static long valueOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long low = (long) (SUB_BUCKETS | sub) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return low + width / 2;
+    }
+
+    /**
+     * The value below which a fraction of the recorded durations fall
+     *
+     * @param quantile between 0 and 1, e.g. 0.99
+     * @return the duration in nanoseconds, 0 if nothing was recorded
+     */
+    public long percentile(double quantile) {
+        long n = getCount();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(valueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public long getCount() {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            n += counts.get(i);
+        }
+        return n;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long n = getCount();
+        return n == 0 ? 0 : total.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentile(0.50) / 1000.0;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return percentile(0.90) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return percentile(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                getCount(), getMeanMicros(), getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros());
+    }
+}
@@ -0,0 +1,22 @@
+package Metrics;
+
+/**
+ * JMX view of a LatencyHistogram, times in microseconds
+ */
+public interface LatencyHistogramMBean {
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
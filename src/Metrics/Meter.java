@@ -0,0 +1,45 @@
+package Metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events, such as publishes of one topic. mark() is a striped add, so
+ * publishers on different threads do not contend
+ */
+public final class Meter implements MeterMBean {
+    private final LongAdder count = new LongAdder();
+
+    private long lastCount;
+    private volatile double rate;
+
+    Meter() {
+    }
+
+    public void mark() {
+        count.increment();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getRatePerSecond() {
+        return rate;
+    }
+
+    /**
+     * Called by the registry's ticker only
+     */
+    void tick(long elapsedNanos) {
+        long now = count.sum();
+        rate = (now - lastCount) * 1e9 / elapsedNanos;
+        lastCount = now;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d rate=%.1f/s", getCount(), getRatePerSecond());
+    }
+}
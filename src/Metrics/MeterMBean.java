@@ -0,0 +1,13 @@
+package Metrics;
+
+/**
+ * JMX view of a Meter
+ */
+public interface MeterMBean {
+    long getCount();
+
+    /**
+     * Events per second over the last tick of the registry, about one second
+     */
+    double getRatePerSecond();
+}
@@ -0,0 +1,200 @@
+package Metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Where the buses keep their meters, histograms and gauges, by name.
+ *
+ * Every metric is registered with the platform MBeanServer under
+ * "Elevator:type=Meter|Histogram|Gauge,name=...", so jconsole or VisualVM show them
+ * live. Running with -Dmetrics.dump=5000 also prints all of them every 5 seconds.
+ *
+ * Names are dotted, starting with the bus that owns the metric:
+ *   eventbus.publish.SIM_FLOOR_TICK                     publishes of a Wiring topic
+ *   eventbus.latency.SIM_FLOOR_TICK                     publish to handler, queued buses only
+ *   eventbus.handler.SIM_FLOOR_TICK.Control.ElevatorController   time spent in one subscriber
+ *   softwarebus.publish.1.2                             publishes of a bus topic
+ *   softwarebus.latency.1.2                             publish to delivery, across processes
+ *   softwarebus.bus1.inbox.1.2                          messages waiting in a Bus inbox
+ *   softwarebus.bus1.handler.1.2.Wiring.SoftwareBusAdapter        time spent in one handler
+ *
+ * Run with -Dmetrics=off to record nothing, the checks fold away in the JIT.
+ */
+public final class MetricsRegistry {
+
+    /**
+     * False when started with -Dmetrics=off
+     */
+    public static final boolean ENABLED = !"off".equals(System.getProperty("metrics"));
+
+    /**
+     * Milliseconds between text dumps, unset or 0 for none
+     */
+    public static final String DUMP_PROPERTY = "metrics.dump";
+
+    private static final String DOMAIN = "Elevator";
+
+    private static final long TICK_MS = 1000;
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final Map<String, Meter> meters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long lastTick = System.nanoTime();
+
+    private MetricsRegistry() {
+        scheduler.scheduleAtFixedRate(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+
+        long dumpMs = Long.getLong(DUMP_PROPERTY, 0);
+        if (dumpMs > 0) {
+            dumpEvery(dumpMs, System.out);
+        }
+    }
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Get the meter with a name, creating and registering it the first time
+     */
+    public Meter meter(String name) {
+        return getOrRegister(meters, name, "Meter", n -> new Meter());
+    }
+
+    /**
+     * Get the histogram with a name, creating and registering it the first time
+     */
+    public LatencyHistogram histogram(String name) {
+        return getOrRegister(histograms, name, "Histogram", n -> new LatencyHistogram());
+    }
+
+    /**
+     * Register a gauge, replacing any gauge that had the name
+     */
+    public Gauge gauge(String name, LongSupplier source) {
+        Gauge gauge = new Gauge(source);
+        if (gauges.put(name, gauge) != null) {
+            unregister("Gauge", name);
+        }
+        register("Gauge", name, gauge);
+        return gauge;
+    }
+
+    /**
+     * Print every metric that has seen something, one per line and sorted by name
+     */
+    public void dump(PrintStream out) {
+        Map<String, Object> all = new TreeMap<>(gauges);
+        meters.forEach((name, meter) -> {
+            if (meter.getCount() > 0) {
+                all.put(name, meter);
+            }
+        });
+        histograms.forEach((name, histogram) -> {
+            if (histogram.getCount() > 0) {
+                all.put(name, histogram);
+            }
+        });
+
+        StringBuilder text = new StringBuilder();
+        text.append("[MTRC] === metrics at ").append(LocalTime.now().format(TIME)).append(" ===\n");
+        for (Map.Entry<String, Object> entry : all.entrySet()) {
+            text.append("[MTRC] ").append(String.format("%-60s", entry.getKey()))
+                    .append(' ').append(entry.getValue()).append('\n');
+        }
+        out.print(text);
+    }
+
+    /**
+     * Start printing every metric at a fixed rate on the metrics thread
+     */
+    public void dumpEvery(long periodMs, PrintStream out) {
+        scheduler.scheduleAtFixedRate(() -> dump(out), periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - lastTick);
+        lastTick = now;
+        for (Meter meter : meters.values()) {
+            meter.tick(elapsed);
+        }
+    }
+
+    private static <M> M getOrRegister(Map<String, M> metrics, String name, String type, Function<String, M> create) {
+        M metric = metrics.get(name);
+        if (metric != null) {
+            return metric;
+        }
+        return metrics.computeIfAbsent(name, n -> {
+            M created = create.apply(n);
+            register(type, n, created);
+            return created;
+        });
+    }
+
+    private static void register(String type, String name, Object metric) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(metric, objectName);
+        } catch (JMException e) {
+            // The metric still records and dumps, it is only missing from JMX
+            System.err.println("[MTRC] Could not register " + name + " with JMX: " + e);
+        }
+    }
+
+    private static void unregister(String type, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("[MTRC] Could not unregister " + name + " from JMX: " + e);
+        }
+    }
+
+    private static ObjectName objectName(String type, String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * A readable name for whoever owns a handler, a lambda or method reference
+     * reports the class it was written in
+     */
+    public static String ownerOf(Object handler) {
+        String name = handler.getClass().getName();
+        int lambda = name.indexOf("$$Lambda");
+        return lambda < 0 ? name : name.substring(0, lambda);
+    }
+}
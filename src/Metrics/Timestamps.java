@@ -0,0 +1,25 @@
+package Metrics;
+
+/**
+ * Timestamps that can be compared between processes on one machine.
+ *
+ * System.nanoTime() is precise but means nothing outside its JVM, the wall clock
+ * is shared but only counts milliseconds. This anchors nanoTime to the wall clock
+ * once, at class load, so a timestamp is precise within a process and off by about
+ * a millisecond at worst between two processes.
+ */
+public final class Timestamps {
+
+    private static final long EPOCH_NANOS_AT_START = System.currentTimeMillis() * 1_000_000L;
+    private static final long NANO_TIME_AT_START = System.nanoTime();
+
+    private Timestamps() {
+    }
+
+    /**
+     * @return nanoseconds since the epoch, never 0
+     */
+    public static long now() {
+        return EPOCH_NANOS_AT_START + (System.nanoTime() - NANO_TIME_AT_START);
+    }
+}
@@ -85,11 +85,11 @@ public class    Multiplexer {
 
 
     private Message pollDevices(Topic topic){
-        Message message = null;
-        while (message == null){
-            message = bus.getMessage(topic);
+        try {
+            return bus.take(topic);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
         }
-        return message;
     }
     private void handleMotorCommand(Message message){
         int body = message.bodyOne();
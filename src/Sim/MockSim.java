@@ -1,49 +1,85 @@
 package Sim;
 
+import Logging.EventLog;
+import Logging.LogEntry;
+import Logging.Logger;
+import Metrics.LatencyHistogram;
+import Metrics.MetricsRegistry;
 import Wiring.EventBus;
+import Wiring.IntChannel;
 import Wiring.Topics;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Lightweigh Motion SIm that advances one floor per tick in response to Controller Commands
  */
 public class MockSim {
-    private static final long TICK_MS = 1200L;
+    /**
+     * How long the car takes to travel one floor
+     */
+    public static final long TICK_MS = 1200L;
+
+    /**
+     * The motion limits of the real car, as in MotionSim.Devices.Motor (m/s, m/s², m)
+     */
+    public static final double V_MAX = 2.0;
+    public static final double A_MAX = 2.0;
+    public static final double FLOOR_HEIGHT = 4.0;
+
+    /**
+     * How far a car at full speed travels while braking to a stop, in floors: v² / 2a
+     */
+    public static final double STOPPING_FLOORS = V_MAX * V_MAX / (2 * A_MAX) / FLOOR_HEIGHT;
+
+    private static final Logger LOG = EventLog.logger("SIM");
+
+    /**
+     * How far behind schedule each tick starts. Ticks run after the subscribers of
+     * the previous tick return, so a slow subscriber shows up here first and in
+     * its eventbus.handler.SIM_FLOOR_TICK histogram next
+     */
+    private static final LatencyHistogram TICK_LATENESS = MetricsRegistry.global().histogram("sim.tick.lateness");
 
     private final EventBus bus;
-    private final ScheduledExecutorService scheduler;
+    private final IntChannel floorTicks;
+    private final IntChannel arrived;
+    private final IntChannel retargetRejected;
+    private final SimClock clock;
     private final Object stateLock = new Object();
     private final Deque<Integer> pendingTargets = new ArrayDeque<>();
 
-    private ScheduledFuture<?> tickerFuture;
+    private SimClock.Timer ticker;
+    /**
+     * When the next tick should run by the clock, for measuring how late it is
+     */
+    private long nextTickDue;
     private int currFloor = -1;
     private Integer activeTarget = null;
 
     public MockSim(EventBus bus) {
+        this(bus, new WallClock("MockSimTicker"));
+    }
+
+    /**
+     * @param clock drives the ticks, a VirtualClock runs the sim in simulated time
+     */
+    public MockSim(EventBus bus, SimClock clock) {
         this.bus = bus;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread thread = new Thread(r, "MockSimTicker");
-            thread.setDaemon(true);
-            return thread;
-        });
+        this.floorTicks = bus.intChannel(Topics.SIM_FLOOR_TICK);
+        this.arrived = bus.intChannel(Topics.SIM_ARRIVED);
+        this.retargetRejected = bus.intChannel(Topics.SIM_RETARGET_REJECTED);
+        this.clock = clock;
 
         this.bus.subscribe(Topics.CTRL_CMD_STOP, event -> onStop());
 
-        this.bus.subscribe(Topics.CTRL_CMD_MOVE_TO, event -> {
-            Object payload = event.payload();
-            if (payload instanceof Integer targetFloor) {
-                onMoveTo(targetFloor);
-            }
-        });
+        this.bus.intChannel(Topics.CTRL_CMD_MOVE_TO).subscribe(this::onMoveTo);
+        this.bus.intChannel(Topics.CTRL_CMD_RETARGET).subscribe(this::onRetarget);
 
-        log("MockSim ready");
+        log(LOG.info("MockSim ready"));
     }
 
     private void onStop() {
@@ -51,7 +87,7 @@ public class MockSim {
             pendingTargets.clear();
             activeTarget = null;
             stopTickerLocked();
-            logLocked("STOP received: halting motion + clearing targets");
+            logLocked(LOG.info("STOP received: halting motion + clearing targets"));
         }
     }
 
@@ -59,13 +95,53 @@ public class MockSim {
         List<Integer> immediateArrivals = new ArrayList<>();
         synchronized (stateLock) {
             pendingTargets.add(targetFloor);
-            logLocked("enqueue move->" + targetFloor);
+            logLocked(LOG.debug("enqueue move").field("to", targetFloor));
             assignNextTargetsLocked(immediateArrivals);
         }
 
         for (Integer floor : immediateArrivals) {
-            log("immediate arrival at floor " + floor + " (already here)");
-            bus.publish(Topics.SIM_ARRIVED, floor);
+            log(LOG.info("immediate arrival (already here)").field("floor", floor));
+            arrived.publish(floor);
+        }
+    }
+
+    /**
+     * End the trip under way at a floor between the car and its target instead. The
+     * controller only asks for floors the car can still brake for, but the car may have
+     * moved on since:
+     *  - a floor the car has just reached ends the trip there, reported as SIM_ARRIVED
+     *  - a floor it has passed, or a trip that already ended, is rejected with
+     *    SIM_RETARGET_REJECTED and the floor the car stops at instead
+     */
+    private void onRetarget(int floor) {
+        List<Integer> immediateArrivals = new ArrayList<>();
+        int rejectedFor;
+        synchronized (stateLock) {
+            if (activeTarget == null) {
+                rejectedFor = currFloor;
+                logLocked(LOG.warn("retarget without a trip, rejected").field("to", floor));
+            } else if (floor != currFloor && Integer.compare(floor, currFloor) != Integer.compare(activeTarget, currFloor)) {
+                rejectedFor = activeTarget;
+                logLocked(LOG.warn("retarget behind the car, rejected").field("to", floor));
+            } else if (floor == currFloor) {
+                // The tick for this floor is already out, it is the arrival
+                rejectedFor = -1;
+                activeTarget = null;
+                immediateArrivals.add(currFloor);
+                logLocked(LOG.info("arrival (retargeted here)").field("floor", currFloor));
+                assignNextTargetsLocked(immediateArrivals);
+            } else {
+                rejectedFor = -1;
+                activeTarget = floor;
+                logLocked(LOG.info("retarget").field("to", floor));
+            }
+        }
+
+        if (rejectedFor >= 0) {
+            retargetRejected.publish(rejectedFor);
+        }
+        for (Integer arrival : immediateArrivals) {
+            arrived.publish(arrival);
         }
     }
 
@@ -75,6 +151,10 @@ public class MockSim {
         List<Integer> chainedArrivals = new ArrayList<>();
 
         synchronized (stateLock) {
+            if (MetricsRegistry.ENABLED && ticker != null) {
+                TICK_LATENESS.record(TimeUnit.MILLISECONDS.toNanos(clock.nowMillis() - nextTickDue));
+                nextTickDue += TICK_MS;
+            }
             if (activeTarget == null) {
                 stopTickerLocked();
                 return;
@@ -84,18 +164,18 @@ public class MockSim {
             if (direction == 0) {
                 arrivalFloor = currFloor;
                 activeTarget = null;
-                logLocked("arrival at " + currFloor);
+                logLocked(LOG.info("arrival").field("floor", currFloor));
                 chainedArrivals = new ArrayList<>();
                 assignNextTargetsLocked(chainedArrivals);
             } else {
                 currFloor += direction;
                 floorTick = currFloor;
-                logLocked("tick -> " + currFloor + " toward " + activeTarget);
+                logLocked(LOG.debug("tick").field("floor", currFloor).field("toward", activeTarget));
 
                 if (currFloor == activeTarget) {
                     arrivalFloor = currFloor;
                     activeTarget = null;
-                    logLocked("arrival at " + currFloor);
+                    logLocked(LOG.info("arrival").field("floor", currFloor));
                     chainedArrivals = new ArrayList<>();
                     assignNextTargetsLocked(chainedArrivals);
                 }
@@ -103,16 +183,17 @@ public class MockSim {
         }
 
         if (floorTick != null) {
-            bus.publish(Topics.SIM_FLOOR_TICK, floorTick);
+            floorTicks.publish(floorTick);
         }
 
         if (arrivalFloor != null) {
-            bus.publish(Topics.SIM_FLOOR_TICK, arrivalFloor);
+            floorTicks.publish(arrivalFloor);
+            arrived.publish(arrivalFloor);
         }
 
         if (chainedArrivals != null) {
             for (Integer floor : chainedArrivals) {
-                bus.publish(Topics.SIM_ARRIVED, floor);
+                arrived.publish(floor);
             }
         }
     }
@@ -124,7 +205,7 @@ public class MockSim {
                 immediateArrivals.add(currFloor);
             } else {
                 activeTarget = next;
-                logLocked("activate target " + next);
+                logLocked(LOG.debug("activate target").field("target", next));
                 ensureTickerRunningLocked();
             }
         }
@@ -135,38 +216,46 @@ public class MockSim {
     }
 
     private void ensureTickerRunningLocked() {
-        if (tickerFuture == null || tickerFuture.isCancelled() || tickerFuture.isDone()) {
-            tickerFuture = scheduler.scheduleAtFixedRate(this::tick, 0, TICK_MS, TimeUnit.MILLISECONDS);
+        if (ticker == null) {
+            nextTickDue = clock.nowMillis();
+            ticker = clock.scheduleAtFixedRate(0, TICK_MS, this::tick);
         }
     }
 
     private void stopTickerLocked() {
-        if (tickerFuture != null) {
-            tickerFuture.cancel(false);
-            tickerFuture = null;
-            logLocked("ticker stopped (no work)");
+        if (ticker != null) {
+            ticker.cancel();
+            ticker = null;
+            logLocked(LOG.debug("ticker stopped (no work)"));
         }
     }
 
-    private void log(String message) {
-        System.out.println("[SIM ] " + message + " | state " + stateSummary());
-    }
-
-    private void logLocked(String message) {
-        System.out.println("[SIM ] " + message + " | state " + stateSummaryLocked());
-    }
-
-    private String stateSummary() {
+    private void log(LogEntry entry) {
+        if (!entry.isEnabled()) {
+            return;
+        }
         synchronized (stateLock) {
-            return stateSummaryLocked();
+            logLocked(entry);
         }
     }
 
-    private String stateSummaryLocked() {
-        String queue = pendingTargets.isEmpty() ? "[]" : pendingTargets.toString();
-        return "curr=" + currFloor +
-                " active=" + activeTarget +
-                " queued=" + queue;
+    /**
+     * Finish a log entry with the sim's state, captured as numbers here and only
+     * turned into text by the event log
+     */
+    private void logLocked(LogEntry entry) {
+        if (!entry.isEnabled()) {
+            return;
+        }
+        long queued = 0;
+        for (int floor : pendingTargets) {
+            if (floor >= 0 && floor < Long.SIZE) {
+                queued |= 1L << floor;
+            }
+        }
+        entry.field("curr", currFloor)
+                .field("active", activeTarget)
+                .floors("queued", queued)
+                .log();
     }
 }
-
@@ -0,0 +1,45 @@
+package Sim;
+
+/**
+ * Where the sim and the controller get the time and schedule what happens later.
+ *
+ * WallClock runs tasks in real time on a background thread. VirtualClock runs them
+ * in simulated time on whichever thread drives it, as fast as the CPU allows, so a
+ * simulated day of traffic takes seconds and needs neither a display nor a timer
+ * thread.
+ */
+public interface SimClock {
+
+    /**
+     * A scheduled task that can still be called off
+     */
+    interface Timer {
+        /**
+         * Stop the task from running again. A run already under way finishes
+         */
+        void cancel();
+    }
+
+    /**
+     * @return the current time in milliseconds, only meaningful relative to other readings
+     */
+    long nowMillis();
+
+    /**
+     * Run a task once after a delay
+     */
+    Timer schedule(long delayMillis, Runnable task);
+
+    /**
+     * Run a task every period, the first time after an initial delay. Runs are due a
+     * whole number of periods after the first, whatever each run takes
+     */
+    Timer scheduleAtFixedRate(long initialDelayMillis, long periodMillis, Runnable task);
+
+    /**
+     * The wall clock shared by everything not given a clock of its own
+     */
+    static SimClock wall() {
+        return WallClock.SHARED;
+    }
+}
@@ -0,0 +1,170 @@
+package Sim;
+
+import java.util.PriorityQueue;
+
+/**
+ * SimClock in simulated time, a discrete event scheduler.
+ *
+ * Nothing happens on its own: the thread driving the clock calls runFor, runUntil
+ * or runNext, and the clock jumps from one due task to the next, running each on
+ * that thread. Tasks due at the same time run in the order they were scheduled,
+ * so a run is repeatable. With a synchronous InMemoryEventBus the whole
+ * controller and sim run on the driving thread.
+ *
+ * Scheduling is thread safe, running is meant for one driving thread.
+ */
+public class VirtualClock implements SimClock {
+
+    private final PriorityQueue<Entry> due = new PriorityQueue<>();
+
+    private long now;
+    private long nextSequence;
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * @param startMillis the time the clock reads before anything has run
+     */
+    public VirtualClock(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public synchronized long nowMillis() {
+        return now;
+    }
+
+    @Override
+    public Timer schedule(long delayMillis, Runnable task) {
+        return add(delayMillis, 0, task);
+    }
+
+    @Override
+    public Timer scheduleAtFixedRate(long initialDelayMillis, long periodMillis, Runnable task) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("period must be positive, was " + periodMillis);
+        }
+        return add(initialDelayMillis, periodMillis, task);
+    }
+
+    private synchronized Entry add(long delayMillis, long periodMillis, Runnable task) {
+        Entry entry = new Entry(now + Math.max(0, delayMillis), nextSequence++, periodMillis, task);
+        due.add(entry);
+        return entry;
+    }
+
+    /**
+     * Jump to the next due task and run it
+     *
+     * @return false if nothing is scheduled
+     */
+    public boolean runNext() {
+        return runNextBefore(Long.MAX_VALUE);
+    }
+
+    /**
+     * Run every task due up to and including a time, tasks they schedule in that
+     * window included, then leave the clock at that time
+     *
+     * @return how many tasks ran
+     */
+    public int runUntil(long timeMillis) {
+        int ran = 0;
+        while (runNextBefore(timeMillis)) {
+            ran++;
+        }
+        synchronized (this) {
+            now = Math.max(now, timeMillis);
+        }
+        return ran;
+    }
+
+    /**
+     * Run everything due in the next span of simulated time
+     *
+     * @return how many tasks ran
+     */
+    public int runFor(long millis) {
+        return runUntil(nowMillis() + millis);
+    }
+
+    /**
+     * Run tasks until none are left or a time limit is reached, whichever comes
+     * first. Fixed rate tasks never run out, so they run until the limit
+     *
+     * @return how many tasks ran
+     */
+    public int runUntilIdle(long limitMillis) {
+        int ran = 0;
+        while (runNextBefore(limitMillis)) {
+            ran++;
+        }
+        return ran;
+    }
+
+    /**
+     * @return how many tasks are waiting, cancelled ones not yet dropped included
+     */
+    public synchronized int pending() {
+        return due.size();
+    }
+
+    private boolean runNextBefore(long limitMillis) {
+        Entry entry;
+        synchronized (this) {
+            while (true) {
+                entry = due.peek();
+                if (entry == null || entry.time > limitMillis) {
+                    return false;
+                }
+                due.poll();
+                if (!entry.cancelled) {
+                    break;
+                }
+            }
+            now = entry.time;
+        }
+        try {
+            entry.task.run();
+        } catch (RuntimeException e) {
+            System.err.println("[SIM ] scheduled task failed: " + e);
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            if (entry.period > 0 && !entry.cancelled) {
+                entry.time += entry.period;
+                entry.sequence = nextSequence++;
+                due.add(entry);
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry implements Comparable<Entry>, Timer {
+        private long time;
+        private long sequence;
+        private final long period;
+        private final Runnable task;
+        private volatile boolean cancelled;
+
+        private Entry(long time, long sequence, long period, Runnable task) {
+            this.time = time;
+            this.sequence = sequence;
+            this.period = period;
+            this.task = task;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package Sim;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimClock in real time. Tasks run one at a time on a daemon thread of the clock
+ */
+public class WallClock implements SimClock {
+
+    static final WallClock SHARED = new WallClock("SimClock");
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param threadName the name of the thread tasks run on
+     */
+    public WallClock(String threadName) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    @Override
+    public Timer schedule(long delayMillis, Runnable task) {
+        return timer(scheduler.schedule(guarded(task), delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public Timer scheduleAtFixedRate(long initialDelayMillis, long periodMillis, Runnable task) {
+        return timer(scheduler.scheduleAtFixedRate(guarded(task), initialDelayMillis, periodMillis,
+                TimeUnit.MILLISECONDS));
+    }
+
+    private static Timer timer(ScheduledFuture<?> future) {
+        return () -> future.cancel(false);
+    }
+
+    /**
+     * A task that throws would silently stop a fixed rate schedule, so report and carry on
+     */
+    private static Runnable guarded(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("[SIM ] scheduled task failed: " + e);
+                e.printStackTrace();
+            }
+        };
+    }
+}
@@ -0,0 +1,168 @@
+package SoftwareBus.Bus;
+
+import Metrics.Timestamps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The compact wire format. Every message is a fixed size frame of six big endian ints
+ * and a long
+ * {t,s,b1,b2,b3,b4,publishedAt}
+ * Body fields missing from a message are sent as 0. publishedAt is Timestamps.now()
+ * when the message was appended, 0 when unknown.
+ * Version 1 frames had no publishedAt, the server still accepts version 1 clients
+ * and strips the timestamp from what it sends them
+ */
+class BinaryCodec implements MessageCodec {
+
+    /**
+     * Sent by a BINARY client when it connects and echoed back by the server.
+     * "SB" followed by the frame version
+     */
+    static final int MAGIC = 0x53420002;
+
+    /**
+     * The handshake of clients speaking version 1 frames
+     */
+    static final int MAGIC_V1 = 0x53420001;
+
+    /**
+     * The size in bytes of one frame
+     */
+    static final int FRAME_BYTES = 32;
+
+    /**
+     * The size in bytes of one version 1 frame, a frame without publishedAt
+     */
+    static final int V1_FRAME_BYTES = 24;
+
+    /**
+     * Frames whose topic is CONTROL_TOPIC are requests to the server BUS instance
+     * rather than messages, laid out as {CONTROL_TOPIC, op, t, s, 0, 0, 0}
+     */
+    static final int CONTROL_TOPIC = -1;
+
+    /**
+     * Control op asking the server to forward messages of topic t and subtopic s to this
+     * client, subtopic 0 asks for every subtopic of t
+     */
+    static final int OP_SUBSCRIBE = 1;
+
+    /**
+     * Control op asking the server to keep the last message of topic t and subtopic s and
+     * send it to every client that subscribes later, subtopic 0 asks for every subtopic of t
+     */
+    static final int OP_RETAIN = 2;
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    BinaryCodec(DataInputStream in, DataOutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * How many bytes of appended frames are held before they are written out anyway
+     */
+    private static final int OUTPUT_BUFFER_BYTES = 1024 * FRAME_BYTES;
+
+    static DataOutputStream output(OutputStream out) {
+        return new DataOutputStream(new BufferedOutputStream(out, OUTPUT_BUFFER_BYTES));
+    }
+
+    static DataInputStream input(InputStream in) {
+        return new DataInputStream(new BufferedInputStream(in));
+    }
+
+    @Override
+    public void append(Message m) throws IOException {
+        if (m == null) {
+            return;
+        }
+        append(m.topicInt(), m.subtopicInt(), m.bodyAt(0), m.bodyAt(1), m.bodyAt(2), m.bodyAt(3));
+    }
+
+    @Override
+    public synchronized void append(int topic, int subtopic, int b1, int b2, int b3, int b4)
+            throws IOException {
+        out.writeInt(topic);
+        out.writeInt(subtopic);
+        out.writeInt(b1);
+        out.writeInt(b2);
+        out.writeInt(b3);
+        out.writeInt(b4);
+        out.writeLong(Timestamps.now());
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void subscribe(Topic t) throws IOException {
+        control(OP_SUBSCRIBE, t);
+    }
+
+    @Override
+    public void retain(Topic t) throws IOException {
+        control(OP_RETAIN, t);
+    }
+
+    private synchronized void control(int op, Topic t) throws IOException {
+        out.writeInt(CONTROL_TOPIC);
+        out.writeInt(op);
+        out.writeInt(t.topic());
+        out.writeInt(t.subtopic());
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeLong(0);
+        out.flush();
+    }
+
+    @Override
+    public Message read() throws IOException {
+        int topic = in.readInt();
+        int subtopic = in.readInt();
+        int[] body = new int[4];
+        for (int i = 0; i < 4; i++) {
+            body[i] = in.readInt();
+        }
+        return new Message(Topic.of(topic, subtopic), body, in.readLong());
+    }
+
+    /**
+     * Write one frame into a buffer, for callers working on NIO channels
+     *
+     * @param m   the message to encode
+     * @param dst the buffer with at least FRAME_BYTES remaining
+     */
+    static void encode(Message m, ByteBuffer dst) {
+        dst.putInt(m.topicInt());
+        dst.putInt(m.subtopicInt());
+        for (int i = 0; i < 4; i++) {
+            dst.putInt(m.bodyAt(i));
+        }
+        dst.putLong(m.publishedAt());
+    }
+
+    /**
+     * Read one frame out of a buffer, for callers working on NIO channels
+     *
+     * @param src the buffer with at least FRAME_BYTES remaining
+     * @return the decoded message
+     */
+    static Message decode(ByteBuffer src) {
+        Topic t = Topic.of(src.getInt(), src.getInt());
+        int[] body = new int[]{src.getInt(), src.getInt(), src.getInt(), src.getInt()};
+        return new Message(t, body, src.getLong());
+    }
+}
@@ -0,0 +1,635 @@
+package SoftwareBus.Bus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The server BUS instance. One reactor thread accepts every client, reads their frames
+ * and fans them out through a write buffer per client, so a slow client can never stall
+ * the clients publishing. BINARY clients register their subscriptions and are only sent
+ * the messages they subscribed to.
+ * <p>
+ * Frames are copied between buffers the reactor owns and never decoded, so relaying
+ * BINARY traffic allocates nothing once the write buffers have grown to their working size.
+ * A client whose write buffer grows past MAX_QUEUED_BYTES is evicted.
+ * <p>
+ * Clients speaking version 1 frames, without a timestamp, share the server with
+ * current ones: their frames are widened with publishedAt 0 when read and sent to
+ * them without the timestamp.
+ * <p>
+ * Topics named in the RETAIN_PROPERTY system property, or asked for with OP_RETAIN, are
+ * state: the last frame of each of their subtopics is kept and replayed to clients
+ * when they subscribe.
+ * OBJECT_STREAM clients cannot be decoded without blocking, so once detected they are
+ * handed to a reader and a writer thread of their own, with a bounded queue of
+ * MAX_LEGACY_MESSAGES in front of the writer.
+ */
+final class Broker implements Runnable {
+
+    /**
+     * How many bytes may wait in a BINARY client's write queue before it is evicted
+     */
+    static final int MAX_QUEUED_BYTES = 1 << 20;
+
+    /**
+     * How many messages may wait for an OBJECT_STREAM client before it is evicted
+     */
+    static final int MAX_LEGACY_MESSAGES = 4096;
+
+    /**
+     * The system property listing topics retained from the start, as comma separated
+     * topic numbers, for example -Dsoftwarebus.retain=1,2,3,7
+     */
+    static final String RETAIN_PROPERTY = "softwarebus.retain";
+
+    /**
+     * How many bytes are read from a client at a time
+     */
+    private static final int READ_BUFFER_BYTES = 256 * BinaryCodec.FRAME_BYTES;
+
+    /**
+     * How many bytes a client's write buffer starts with, it doubles up to MAX_QUEUED_BYTES
+     */
+    private static final int INITIAL_WRITE_BUFFER_BYTES = 16 * 1024;
+
+    /**
+     * The handshake reply, only ever read with absolute gets
+     */
+    private static final ByteBuffer ACK = ByteBuffer.allocate(4).putInt(0, BinaryCodec.MAGIC);
+    private static final ByteBuffer ACK_V1 = ByteBuffer.allocate(4).putInt(0, BinaryCodec.MAGIC_V1);
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+
+    /**
+     * The BINARY clients, only touched by the reactor thread
+     */
+    private final List<Client> clients = new ArrayList<>();
+
+    /**
+     * Clients found to speak OBJECT_STREAM that still have to leave the selector
+     */
+    private final List<Client> handOffs = new ArrayList<>();
+
+    /**
+     * The OBJECT_STREAM clients, each running on its own threads
+     */
+    private final List<LegacyClient> legacyClients = new CopyOnWriteArrayList<>();
+
+    /**
+     * Messages read by OBJECT_STREAM clients waiting for the reactor to fan them out
+     */
+    private final Queue<Message> fromLegacy = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The retained topics, keyed like client subscriptions
+     */
+    private final IntMap<Boolean> retained = new IntMap<>();
+
+    /**
+     * The last frame of every retained topic and subtopic seen so far, keyed by Topic.key().
+     * Each buffer is overwritten in place by the next frame of its topic
+     */
+    private final IntMap<ByteBuffer> lastValues = new IntMap<>();
+
+    /**
+     * The same buffers as lastValues, for replaying every subtopic of a topic
+     */
+    private final List<ByteBuffer> lastValueList = new ArrayList<>();
+
+    /**
+     * The frames of one read or one drain of fromLegacy, reused for every fan out.
+     * Big enough for a full read of version 1 frames once widened
+     */
+    private final ByteBuffer staging = ByteBuffer.allocate(
+            READ_BUFFER_BYTES / BinaryCodec.V1_FRAME_BYTES * BinaryCodec.FRAME_BYTES);
+
+    private Broker(Selector selector, ServerSocketChannel server) {
+        this.selector = selector;
+        this.server = server;
+        String configured = System.getProperty(RETAIN_PROPERTY, "");
+        for (String topic : configured.split(",")) {
+            if (topic.isBlank()) {
+                continue;
+            }
+            try {
+                retained.put(Topic.key(Integer.parseInt(topic.trim()), 0), Boolean.TRUE);
+            } catch (NumberFormatException e) {
+                System.err.println("BUS ignoring " + RETAIN_PROPERTY + " entry '" + topic + "', not a topic number");
+            }
+        }
+    }
+
+    /**
+     * Bind the server BUS instance to a port and start its reactor thread
+     *
+     * @param port the port to listen on
+     * @return the running broker
+     * @throws IOException if the port cannot be bound, a BindException if another
+     *                     server BUS instance already has it
+     */
+    static Broker start(int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            Selector selector = Selector.open();
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            Broker broker = new Broker(selector, server);
+            Thread reactor = new Thread(broker, "SoftwareBus-Broker");
+            reactor.setDaemon(true);
+            reactor.start();
+            return broker;
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void run() {
+        // Selecting with an action rather than through selectedKeys() leaves no iterator behind
+        Consumer<SelectionKey> ready = this::process;
+        while (true) {
+            try {
+                drainLegacy();
+                selector.select(ready);
+                clients.removeIf(Client::isClosed);
+                if (!handOffs.isEmpty()) {
+                    // Cancelled keys are only deregistered by the next select
+                    selector.selectNow(ready);
+                    finishHandOffs();
+                    clients.removeIf(Client::isClosed);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void process(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            acceptClient();
+            return;
+        }
+        Client c = (Client) key.attachment();
+        try {
+            if (key.isReadable()) {
+                read(c);
+            }
+            if (key.isValid() && key.isWritable()) {
+                c.flush();
+            }
+        } catch (IOException e) {
+            close(c, e.getMessage());
+        }
+    }
+
+    private void acceptClient() {
+        try {
+            SocketChannel channel = server.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Client c = new Client(channel);
+            c.key = channel.register(selector, SelectionKey.OP_READ, c);
+            clients.add(c);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Read whatever a client has sent and fan out every complete frame
+     *
+     * @param c the client that is readable
+     * @throws IOException if the client can no longer be read from
+     */
+    private void read(Client c) throws IOException {
+        if (c.channel.read(c.in) < 0) {
+            close(c, "disconnected");
+            return;
+        }
+        c.in.flip();
+        if (!c.handshaken) {
+            if (c.in.remaining() < 4) {
+                c.in.compact();
+                return;
+            }
+            int header = c.in.getInt(c.in.position());
+            if (header == BinaryCodec.MAGIC || header == BinaryCodec.MAGIC_V1) {
+                c.in.getInt();
+                c.handshaken = true;
+                ByteBuffer ack = ACK;
+                if (header == BinaryCodec.MAGIC_V1) {
+                    c.frameBytes = BinaryCodec.V1_FRAME_BYTES;
+                    ack = ACK_V1;
+                }
+                c.enqueue(ack, 0, ack.capacity());
+                c.flushIfIdle();
+            } else if ((header >>> 16) == ObjectStreamCodec.STREAM_MAGIC) {
+                c.key.cancel();
+                handOffs.add(c);
+                return;
+            } else {
+                close(c, "unknown wire format header " + Integer.toHexString(header));
+                return;
+            }
+        }
+        int whole = c.in.remaining() - c.in.remaining() % c.frameBytes;
+        if (whole > 0) {
+            staging.clear();
+            int end = c.in.position() + whole;
+            for (int p = c.in.position(); p < end; p += c.frameBytes) {
+                if (c.in.getInt(p) == BinaryCodec.CONTROL_TOPIC) {
+                    control(c, p);
+                } else if (c.frameBytes == BinaryCodec.FRAME_BYTES) {
+                    staging.put(c.in.array(), p, BinaryCodec.FRAME_BYTES);
+                } else {
+                    // No timestamp, latency of this message is unknown
+                    staging.put(c.in.array(), p, BinaryCodec.V1_FRAME_BYTES).putLong(0);
+                }
+            }
+            c.in.position(end);
+            staging.flip();
+            if (staging.hasRemaining()) {
+                fanOut(staging);
+            }
+        }
+        c.in.compact();
+    }
+
+    /**
+     * Apply a control frame sent by a client
+     *
+     * @param c     the client that sent it
+     * @param frame the position of the frame in the client's read buffer
+     */
+    private void control(Client c, int frame) {
+        int op = c.in.getInt(frame + 4);
+        int topic = c.in.getInt(frame + 8);
+        int subtopic = c.in.getInt(frame + 12);
+        if (op == BinaryCodec.OP_SUBSCRIBE) {
+            boolean wanted = c.wants(topic, subtopic);
+            c.subscriptions.computeIfAbsent(Topic.key(topic, subtopic), k -> Boolean.TRUE);
+            if (!wanted) {
+                replay(c, topic, subtopic);
+            }
+        } else if (op == BinaryCodec.OP_RETAIN) {
+            retained.computeIfAbsent(Topic.key(topic, subtopic), k -> Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Send a client that just subscribed the last value of every retained subtopic
+     * the subscription covers
+     */
+    private void replay(Client c, int topic, int subtopic) {
+        if (subtopic != 0) {
+            ByteBuffer last = lastValues.get(Topic.key(topic, subtopic));
+            if (last != null) {
+                c.enqueue(last, 0, c.frameBytes);
+            }
+        } else {
+            for (ByteBuffer last : lastValueList) {
+                if (last.getInt(0) == topic) {
+                    c.enqueue(last, 0, c.frameBytes);
+                }
+            }
+        }
+        c.flushIfIdle();
+    }
+
+    /**
+     * Keep the frames of retained topics as their last values
+     *
+     * @param frames a buffer holding only whole message frames, from position 0
+     */
+    private void retain(ByteBuffer frames) {
+        for (int p = 0; p < frames.limit(); p += BinaryCodec.FRAME_BYTES) {
+            int topic = frames.getInt(p);
+            int subtopic = frames.getInt(p + 4);
+            int key = Topic.key(topic, subtopic);
+            if (retained.get(key) == null && retained.get(Topic.key(topic, 0)) == null) {
+                continue;
+            }
+            ByteBuffer last = lastValues.get(key);
+            if (last == null) {
+                last = ByteBuffer.allocate(BinaryCodec.FRAME_BYTES);
+                lastValues.put(key, last);
+                lastValueList.add(last);
+            }
+            last.put(0, frames, p, BinaryCodec.FRAME_BYTES);
+        }
+    }
+
+    /**
+     * Copy frames into the write buffer of every client subscribed to them, runs of
+     * wanted frames in one copy. Version 1 clients get each frame without its
+     * timestamp. OBJECT_STREAM clients get every message decoded and filter locally
+     *
+     * @param frames a buffer holding only whole message frames, from position 0
+     */
+    private void fanOut(ByteBuffer frames) {
+        retain(frames);
+        int limit = frames.limit();
+        for (Client c : clients) {
+            if (!c.handshaken || c.closed) {
+                continue;
+            }
+            int run = -1;
+            for (int p = 0; p < limit; p += BinaryCodec.FRAME_BYTES) {
+                if (c.wants(frames.getInt(p), frames.getInt(p + 4))) {
+                    if (c.frameBytes == BinaryCodec.V1_FRAME_BYTES) {
+                        c.enqueue(frames, p, BinaryCodec.V1_FRAME_BYTES);
+                    } else if (run < 0) {
+                        run = p;
+                    }
+                } else if (run >= 0) {
+                    c.enqueue(frames, run, p - run);
+                    run = -1;
+                }
+            }
+            if (run >= 0) {
+                c.enqueue(frames, run, limit - run);
+            }
+            c.flushIfIdle();
+        }
+        if (legacyClients.isEmpty()) {
+            return;
+        }
+        ByteBuffer view = frames.duplicate();
+        while (view.hasRemaining()) {
+            Message m = BinaryCodec.decode(view);
+            for (LegacyClient l : legacyClients) {
+                l.offer(m);
+            }
+        }
+    }
+
+    /**
+     * Fan out every message OBJECT_STREAM clients have read since the last pass
+     */
+    private void drainLegacy() {
+        if (fromLegacy.isEmpty()) {
+            return;
+        }
+        Message m;
+        do {
+            staging.clear();
+            while (staging.remaining() >= BinaryCodec.FRAME_BYTES && (m = fromLegacy.poll()) != null) {
+                BinaryCodec.encode(m, staging);
+            }
+            fanOut(staging.flip());
+        } while (!fromLegacy.isEmpty());
+        clients.removeIf(Client::isClosed);
+    }
+
+    /**
+     * Move clients that turned out to speak OBJECT_STREAM onto their own threads
+     */
+    private void finishHandOffs() {
+        for (Client c : handOffs) {
+            clients.remove(c);
+            byte[] head = new byte[c.in.remaining()];
+            c.in.get(head);
+            try {
+                c.channel.configureBlocking(true);
+                LegacyClient legacy = new LegacyClient(c.channel.socket());
+                legacyClients.add(legacy);
+                for (ByteBuffer last : lastValueList) {
+                    legacy.offer(BinaryCodec.decode(last.duplicate()));
+                }
+                legacy.start(head);
+            } catch (IOException e) {
+                close(c, e.getMessage());
+            }
+        }
+        handOffs.clear();
+    }
+
+    private void close(Client c, String reason) {
+        if (c.closed) {
+            return;
+        }
+        c.closed = true;
+        if (c.key != null) {
+            c.key.cancel();
+        }
+        try {
+            c.channel.close();
+        } catch (IOException ignored) {
+        }
+        if (!"disconnected".equals(reason)) {
+            System.err.println("BUS client " + c.address + " closed: " + reason);
+        }
+    }
+
+    /**
+     * A BINARY client and its write buffer. Only touched by the reactor thread
+     */
+    private final class Client {
+        private final SocketChannel channel;
+        private final String address;
+        private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        /**
+         * The bytes waiting to be written, kept ready to be filled
+         */
+        private ByteBuffer out = ByteBuffer.allocateDirect(INITIAL_WRITE_BUFFER_BYTES);
+        /**
+         * The topics this client subscribed to, keyed like the subscriptions of a Bus
+         */
+        private final IntMap<Boolean> subscriptions = new IntMap<>();
+        private SelectionKey key;
+        /**
+         * Whether the socket was full and the selector is waiting for it to drain
+         */
+        private boolean writePending;
+        private boolean handshaken;
+        /**
+         * The size of the frames this client reads and writes, set by its handshake
+         */
+        private int frameBytes = BinaryCodec.FRAME_BYTES;
+        private boolean closed;
+
+        private Client(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.address = String.valueOf(channel.getRemoteAddress());
+        }
+
+        private boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Determine if this client subscribed to a topic, with the same subtopic 0
+         * wildcard a Bus applies locally
+         */
+        private boolean wants(int topic, int subtopic) {
+            return subscriptions.get(Topic.key(topic, subtopic)) != null
+                    || subscriptions.get(Topic.key(topic, 0)) != null;
+        }
+
+        /**
+         * Copy bytes into the write buffer, growing it if needed.
+         * Evicts the client if it has fallen too far behind
+         *
+         * @param src    the buffer holding the bytes, left untouched
+         * @param from   the index of the first byte
+         * @param length how many bytes to send
+         */
+        private void enqueue(ByteBuffer src, int from, int length) {
+            if (closed) {
+                return;
+            }
+            int queued = out.position();
+            if (queued + length > MAX_QUEUED_BYTES) {
+                close(this, "slow consumer, " + queued + " bytes waiting");
+                return;
+            }
+            if (queued + length > out.capacity()) {
+                int capacity = out.capacity();
+                while (capacity < queued + length) {
+                    capacity *= 2;
+                }
+                ByteBuffer grown = ByteBuffer.allocateDirect(Math.min(capacity, MAX_QUEUED_BYTES));
+                grown.put(out.flip());
+                out = grown;
+            }
+            out.put(queued, src, from, length);
+            out.position(queued + length);
+        }
+
+        /**
+         * Write what was enqueued straight away, unless the selector is already
+         * waiting for the socket to drain
+         */
+        private void flushIfIdle() {
+            if (closed || writePending || out.position() == 0) {
+                return;
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                close(this, e.getMessage());
+            }
+        }
+
+        /**
+         * Write as much of the buffer as the socket takes without blocking, and only
+         * ask the selector for writability while something is left over
+         *
+         * @throws IOException if the client can no longer be written to
+         */
+        private void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            boolean pending = out.position() > 0;
+            if (pending != writePending) {
+                writePending = pending;
+                key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    /**
+     * An OBJECT_STREAM client, read and written on blocking threads of its own
+     */
+    private final class LegacyClient {
+        private final Socket socket;
+        private final BlockingQueue<Message> out = new ArrayBlockingQueue<>(MAX_LEGACY_MESSAGES);
+        private volatile Thread writer;
+        private volatile boolean closed;
+
+        private LegacyClient(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Start the reader thread, which opens the codec and then starts the writer
+         *
+         * @param head the bytes already read while detecting the wire format
+         */
+        private void start(byte[] head) {
+            Thread reader = new Thread(() -> {
+                try {
+                    MessageCodec codec = new ObjectStreamCodec(
+                            new SequenceInputStream(new ByteArrayInputStream(head), socket.getInputStream()),
+                            socket.getOutputStream());
+                    writer = new Thread(() -> write(codec), "SoftwareBus-LegacyWriter");
+                    writer.setDaemon(true);
+                    writer.start();
+                    while (!closed) {
+                        Message m = codec.read();
+                        if (m != null) {
+                            fromLegacy.add(m);
+                            selector.wakeup();
+                        }
+                    }
+                } catch (IOException e) {
+                    close();
+                }
+            }, "SoftwareBus-LegacyReader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void write(MessageCodec codec) {
+            try {
+                while (!closed) {
+                    codec.write(out.take());
+                }
+            } catch (IOException e) {
+                close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void offer(Message m) {
+            if (!closed && !out.offer(m)) {
+                System.err.println("BUS client " + socket.getRemoteSocketAddress()
+                        + " closed: slow consumer, " + out.size() + " messages waiting");
+                close();
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            legacyClients.remove(this);
+            if (writer != null) {
+                writer.interrupt();
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -1,36 +1,125 @@
 package SoftwareBus.Bus;
 
+import Metrics.LatencyHistogram;
+import Metrics.MetricsRegistry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 
 public class Bus {
     /**
-     * The queue of messages in your inbox
-     *
+     * Numbers the buses of this JVM, so their metrics can be told apart
+     */
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+    /**
+     * Your inbox, one queue of messages per topic and subtopic.
+     * Queues are created the first time a message of their topic arrives
+     */
+    private final IntMap<BlockingQueue<Message>> inboxes;
+
+    /**
+     * The topics that you are subscribed to, keyed by Topic.key().
+     * A subscription with subtopic 0 is stored under key(topic, 0) and
+     * matches every subtopic of its topic
+     */
+    private final IntMap<Topic> subscriptions;
+
+    /**
+     * The handlers registered with subscribe(Topic, Consumer), keyed the same way as
+     * the subscriptions
      */
-    private BlockingQueue<Message> queue;
+    private final IntMap<Handler[]> handlers;
 
     /**
-     * The list of topics that you are subscribed to
+     * The topics subscribed to with subscribeLatest, keyed the same way as the
+     * subscriptions. Their inboxes and handlers only keep the newest message
      */
-    private CopyOnWriteArrayList<Topic> subscriptions;
+    private final IntMap<Boolean> latestOnly;
+
+    /**
+     * Notified when a message lands in an inbox while some thread is in select()
+     */
+    private final Object arrivals = new Object();
+
     /**
-     * You connect to the message distributor
+     * How many threads are waiting in select()
+     */
+    private final AtomicInteger selecting = new AtomicInteger();
+
+    /**
+     * Runs the handlers, created on first use when none was given
+     */
+    private Executor executor;
+
+    /**
+     * You connect to the message distributor shared by every bus in this JVM
      */
     private MessageDistributor distributor;
 
+    /**
+     * Where this bus's metrics are named, e.g. softwarebus.bus1.inbox.1.2 for the
+     * depth of an inbox and softwarebus.bus1.handler.1.2.Owner for a handler's run time
+     */
+    private final String metricsPrefix = "softwarebus.bus" + NEXT_ID.getAndIncrement();
+
     /**
      * Method to make a new bus. Each bus will have a queue and
      * a list of subscriptions. It will also have a connection to other software bus
-     * through the use of message distributor
+     * through the use of message distributor, which is shared with the other buses
+     * in this JVM
      */
     public Bus() {
-        this.queue = new LinkedBlockingQueue<>();
-        this.subscriptions = new CopyOnWriteArrayList<>();
-        distributor = new MessageDistributor(1234);
-        updateQueue();
+        this(WireFormat.fromSystemProperty());
+    }
+
+    /**
+     * Method to make a new bus that talks to the other software buses
+     * using the given wire format
+     *
+     * @param format the wire format used by the message distributor
+     */
+    public Bus(WireFormat format) {
+        this(format, null);
+    }
+
+    /**
+     * Method to make a new bus whose handlers run on the given executor
+     *
+     * @param executor runs the handlers registered with subscribe(Topic, Consumer)
+     */
+    public Bus(Executor executor) {
+        this(WireFormat.fromSystemProperty(), executor);
+    }
+
+    /**
+     * Method to make a new bus using the given wire format, whose handlers run on
+     * the given executor. Without an executor, handlers run on one daemon thread
+     * belonging to this bus
+     *
+     * @param format   the wire format used by the message distributor
+     * @param executor runs the handlers registered with subscribe(Topic, Consumer), may be null
+     */
+    public Bus(WireFormat format, Executor executor) {
+        this.inboxes = new IntMap<>();
+        this.subscriptions = new IntMap<>();
+        this.handlers = new IntMap<>();
+        this.latestOnly = new IntMap<>();
+        this.executor = executor;
+        distributor = MessageDistributor.shared(1234, format);
     }
 
     /**
@@ -40,25 +129,143 @@ public class Bus {
      *          topic contains both topic and subtopic
      */
     public void subscribe(Topic t) {
-        this.subscriptions.add(t);
+        this.subscriptions.computeIfAbsent(t.key(), k -> t);
+        distributor.attach(this, t);
+    }
+
+    /**
+     * Mark a topic as state rather than events. The server BUS instance keeps the last
+     * message of each of its subtopics and hands it to anyone who subscribes later, so
+     * they start from the current state instead of waiting for the next change.
+     * Buses in one JVM share a connection, which the server only replays to once; a bus
+     * subscribing after another is handed the last retained messages by the connection
+     *
+     * @param t the topic to retain, subtopic 0 meaning every subtopic of the topic
+     */
+    public void retain(Topic t) {
+        distributor.retain(t);
     }
 
     /**
-     * Get the most recent message you have from your inbox of a
+     * Subscribe to a topic and have every message of it handed to a handler
+     * instead of your inbox. Messages are handed over in the order they arrived,
+     * one at a time per handler, on this bus's executor
+     *
+     * @param t       the topic you are subscribing to,
+     *                subtopic 0 meaning every subtopic of the topic
+     * @param handler called with each message of the topic
+     */
+    public void subscribe(Topic t, Consumer<Message> handler) {
+        addHandler(t, new FifoHandler(handler, handlerExecutor(), handlerTime(t, handler)));
+    }
+
+    /**
+     * Subscribe to a topic that carries state rather than events. Only the newest
+     * message of each subtopic is kept in your inbox, so a consumer that falls behind
+     * skips straight to the current state instead of working through stale ones
+     *
+     * @param t the topic you are subscribing to,
+     *          subtopic 0 meaning every subtopic of the topic
+     */
+    public void subscribeLatest(Topic t) {
+        this.latestOnly.computeIfAbsent(t.key(), k -> Boolean.TRUE);
+        subscribe(t);
+    }
+
+    /**
+     * Subscribe to a topic that carries state rather than events and have its messages
+     * handed to a handler. When the handler falls behind, only the newest message of
+     * each subtopic waits for it
+     *
+     * @param t       the topic you are subscribing to,
+     *                subtopic 0 meaning every subtopic of the topic
+     * @param handler called with the newest message of the topic
+     */
+    public void subscribeLatest(Topic t, Consumer<Message> handler) {
+        addHandler(t, new LatestHandler(handler, handlerExecutor(), handlerTime(t, handler)));
+    }
+
+    private void addHandler(Topic t, Handler h) {
+        synchronized (this.handlers) {
+            // Arrays are replaced rather than grown so routing never locks
+            Handler[] old = this.handlers.get(t.key());
+            Handler[] grown = (old == null) ? new Handler[1] : Arrays.copyOf(old, old.length + 1);
+            grown[grown.length - 1] = h;
+            this.handlers.put(t.key(), grown);
+        }
+        distributor.attach(this, t);
+    }
+
+    /**
+     * Get the oldest message you have from your inbox of a
      * given topic. If you do not have any messages of that topic you will receive null
      *
      * @param t the topic you are get a message for.
      *          topic contains both topic and subtopic
-     * @return the most recent message if there is one of a provided topic
+     * @return the oldest message if there is one of a provided topic
      */
     public Message getMessage(Topic t) {
-        for (Message m : this.queue) {
-            if (m.getTopics().equals(t)) {
-                queue.remove(m);
+        BlockingQueue<Message> inbox = this.inboxes.get(t.key());
+        return (inbox == null) ? null : inbox.poll();
+    }
+
+    /**
+     * Get the oldest message of a given topic, waiting until one arrives
+     *
+     * @param t the topic you are waiting for a message of
+     * @return the oldest message of the topic
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Message take(Topic t) throws InterruptedException {
+        return inbox(t.key()).take();
+    }
+
+    /**
+     * Get the oldest message of a given topic, waiting up to a timeout for one to arrive
+     *
+     * @param t             the topic you are waiting for a message of
+     * @param timeoutMillis how long to wait in milliseconds
+     * @return the oldest message of the topic, or null if none arrived in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Message take(Topic t, long timeoutMillis) throws InterruptedException {
+        return inbox(t.key()).poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the oldest message of the first of several topics that has one, waiting up to
+     * a timeout for any of them to arrive
+     *
+     * @param timeoutMillis how long to wait in milliseconds
+     * @param topics        the topics you are waiting for a message of, checked in order
+     * @return the message, or null if none arrived in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Message select(long timeoutMillis, Topic... topics) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            Message m = poll(topics);
+            if (m != null) {
                 return m;
             }
+            synchronized (this.arrivals) {
+                this.selecting.incrementAndGet();
+                try {
+                    // Checked again now that routing knows to notify us
+                    m = poll(topics);
+                    if (m != null) {
+                        return m;
+                    }
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    this.arrivals.wait(remaining);
+                } finally {
+                    this.selecting.decrementAndGet();
+                }
+            }
         }
-        return null;
     }
 
     /**
@@ -71,26 +278,275 @@ public class Bus {
     }
 
     /**
-     * A helper method that will read all incoming messages and
-     * filter messages that you are subscribed to. If you are subscribed then
-     * it will be added to your queue. If not then it will be ignored
+     * Publish a message given as its fields. Nothing is allocated on the way to the
+     * socket, so prefer this on paths publishing at a high rate
+     *
+     * @param t  the topic of the message, see Topic.of
+     * @param b1 the b1 field
+     * @param b2 the b2 field
+     * @param b3 the b3 field
+     * @param b4 the b4 field
+     */
+    public void publish(Topic t, int b1, int b2, int b3, int b4) {
+        distributor.send(t, b1, b2, b3, b4);
+    }
+
+    /**
+     * Publish several messages in one write, in order
+     *
+     * @param messages the messages that will be published
      */
-    private void updateQueue() {
-        new Thread(() -> {
-            while (true) {
-                Message m = distributor.nextMessage();
-                for (Topic t : subscriptions) {
-                    if (t.equals(m.getTopics())) {
-                        queue.add(m);
-                        break;
-                    } else if (t.topic() == m.topicInt() && t.subtopic() == 0) {
-                        queue.add(m);
-                        break;
+    public void publishAll(List<Message> messages) {
+        distributor.sendAll(messages);
+    }
+
+    /**
+     * Hold published messages back so bursts leave in one write. A batch is sent once it
+     * has maxMessages messages, or lingerMillis after its first message, whichever comes
+     * first. Every bus in this JVM shares the connection, so this applies to all of them
+     *
+     * @param lingerMillis how long the first message of a batch may wait, in milliseconds
+     * @param maxMessages  how many messages fill a batch, 1 or less turns batching off
+     */
+    public void setBatching(long lingerMillis, int maxMessages) {
+        distributor.setBatching(lingerMillis, maxMessages);
+    }
+
+    private Message poll(Topic[] topics) {
+        for (Topic t : topics) {
+            Message m = getMessage(t);
+            if (m != null) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    private BlockingQueue<Message> inbox(int key) {
+        return this.inboxes.computeIfAbsent(key, k -> {
+            BlockingQueue<Message> inbox = isLatestOnly(k)
+                    ? new ArrayBlockingQueue<>(1)
+                    : new LinkedBlockingQueue<>();
+            if (MetricsRegistry.ENABLED) {
+                MetricsRegistry.global().gauge(metricsPrefix + ".inbox." + (k >> 16) + "." + (k & 0xFFFF),
+                        inbox::size);
+            }
+            return inbox;
+        });
+    }
+
+    /**
+     * The histogram a handler's run time is recorded in, null when metrics are off
+     */
+    private LatencyHistogram handlerTime(Topic t, Consumer<Message> handler) {
+        if (!MetricsRegistry.ENABLED) {
+            return null;
+        }
+        return MetricsRegistry.global().histogram(metricsPrefix + ".handler." + t.topic() + "." + t.subtopic()
+                + "." + MetricsRegistry.ownerOf(handler));
+    }
+
+    private boolean isLatestOnly(int key) {
+        return latestOnly.get(key) != null || latestOnly.get(Topic.wildcardKey(key)) != null;
+    }
+
+    private synchronized Executor handlerExecutor() {
+        if (this.executor == null) {
+            this.executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "SoftwareBus-Handlers");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.executor;
+    }
+
+    /**
+     * Determine if a message should be added to your inbox, either because you subscribed
+     * to its exact topic or to subtopic 0 of its topic
+     *
+     * @param key   the key of the message's topic
+     * @param topic the topic number of the message
+     * @return true if you are subscribed to the message
+     */
+    private boolean isSubscribed(int key, int topic) {
+        return subscriptions.get(key) != null || subscriptions.get(Topic.key(topic, 0)) != null;
+    }
+
+    /**
+     * Hand a message to every handler registered for its exact topic or for subtopic 0
+     * of its topic
+     */
+    private void dispatch(Message m, int key) {
+        dispatch(m, key, handlers.get(key));
+        int wildcard = Topic.wildcardKey(key);
+        if (wildcard != key) {
+            dispatch(m, key, handlers.get(wildcard));
+        }
+    }
+
+    private static void dispatch(Message m, int key, Handler[] registered) {
+        if (registered != null) {
+            for (Handler h : registered) {
+                h.offer(m, key);
+            }
+        }
+    }
+
+    /**
+     * Called by the shared message distributor with each message this bus subscribed
+     * to. Messages with a handler are handed to it, messages you subscribed to without
+     * one are added to the inbox of their topic
+     *
+     * @param m   the message that arrived
+     * @param key the key of the message's topic
+     */
+    void deliver(Message m, int key) {
+        dispatch(m, key);
+        if (isSubscribed(key, m.topicInt())) {
+            BlockingQueue<Message> inbox = inbox(key);
+            // Only a latest only inbox is ever full, it drops its stale message
+            while (!inbox.offer(m)) {
+                inbox.poll();
+            }
+            if (selecting.get() > 0) {
+                synchronized (arrivals) {
+                    arrivals.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * A handler registered with subscribe(Topic, Consumer) and the messages waiting for it.
+     * At most one task per handler is on the executor at a time, which keeps its
+     * messages in order whatever executor is used
+     */
+    private abstract static class Handler implements Runnable {
+        private final Consumer<Message> consumer;
+        private final Executor executor;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        /**
+         * How long the consumer takes per message, null when metrics are off
+         */
+        private final LatencyHistogram time;
+
+        private Handler(Consumer<Message> consumer, Executor executor, LatencyHistogram time) {
+            this.consumer = consumer;
+            this.executor = executor;
+            this.time = time;
+        }
+
+        /**
+         * Keep a message for the handler and make sure a task will hand it over
+         *
+         * @param m   the message that arrived
+         * @param key the key of the message's topic
+         */
+        final void offer(Message m, int key) {
+            hold(m, key);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        abstract void hold(Message m, int key);
+
+        /**
+         * @return the next message to hand over, or null if none is waiting
+         */
+        abstract Message next();
+
+        abstract boolean isIdle();
+
+        @Override
+        public final void run() {
+            do {
+                Message m;
+                while ((m = next()) != null) {
+                    long start = System.nanoTime();
+                    try {
+                        consumer.accept(m);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                    if (time != null) {
+                        time.record(System.nanoTime() - start);
                     }
                 }
+                scheduled.set(false);
+            } while (!isIdle() && scheduled.compareAndSet(false, true));
+        }
+    }
+
+    /**
+     * Hands over every message, oldest first
+     */
+    private static final class FifoHandler extends Handler {
+        private final BlockingQueue<Message> pending = new LinkedBlockingQueue<>();
+
+        private FifoHandler(Consumer<Message> consumer, Executor executor, LatencyHistogram time) {
+            super(consumer, executor, time);
+        }
+
+        @Override
+        void hold(Message m, int key) {
+            pending.add(m);
+        }
+
+        @Override
+        Message next() {
+            return pending.poll();
+        }
+
+        @Override
+        boolean isIdle() {
+            return pending.isEmpty();
+        }
+    }
+
+    /**
+     * Hands over only the newest message of each topic and subtopic, a message still
+     * waiting when a newer one of its topic arrives is dropped
+     */
+    private static final class LatestHandler extends Handler {
+        /**
+         * The newest message not yet handed over, one slot per topic key
+         */
+        private final IntMap<AtomicReference<Message>> slots = new IntMap<>();
+        /**
+         * The slots that were empty when a message was put in them, in arrival order
+         */
+        private final Queue<AtomicReference<Message>> filled = new ConcurrentLinkedQueue<>();
+
+        private LatestHandler(Consumer<Message> consumer, Executor executor, LatencyHistogram time) {
+            super(consumer, executor, time);
+        }
+
+        @Override
+        void hold(Message m, int key) {
+            AtomicReference<Message> slot = slots.computeIfAbsent(key, k -> new AtomicReference<>());
+            if (slot.getAndSet(m) == null) {
+                filled.add(slot);
+            }
+        }
+
+        @Override
+        Message next() {
+            AtomicReference<Message> slot;
+            while ((slot = filled.poll()) != null) {
+                Message m = slot.getAndSet(null);
+                if (m != null) {
+                    return m;
+                }
             }
+            return null;
+        }
 
-        }).start();
+        @Override
+        boolean isIdle() {
+            return filled.isEmpty();
+        }
     }
 
 }
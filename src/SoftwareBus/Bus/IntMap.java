@@ -0,0 +1,129 @@
+package SoftwareBus.Bus;
+
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An open addressed map from int keys to values, built for lookups on every message.
+ * Reads never lock: every write publishes a new table, which is cheap because
+ * writes only happen when something is subscribed for the first time
+ *
+ * @param <V> the type of the values
+ */
+final class IntMap<V> {
+
+    /**
+     * One immutable generation of the map, keys are probed linearly
+     */
+    private static final class Table {
+        private final int[] keys;
+        private final Object[] values;
+        private final int size;
+
+        private Table(int capacity, int size) {
+            this.keys = new int[capacity];
+            this.values = new Object[capacity];
+            this.size = size;
+        }
+    }
+
+    private volatile Table table = new Table(16, 0);
+
+    /**
+     * Get the value stored for a key
+     *
+     * @param key the key to look up
+     * @return the value, or null if the key has none
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        Table t = table;
+        int mask = t.keys.length - 1;
+        for (int i = mix(key) & mask; t.values[i] != null; i = (i + 1) & mask) {
+            if (t.keys[i] == key) {
+                return (V) t.values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the value stored for a key, creating and storing it first if there is none
+     *
+     * @param key     the key to look up
+     * @param factory creates the value when the key has none
+     * @return the value stored for the key
+     */
+    V computeIfAbsent(int key, IntFunction<V> factory) {
+        V v = get(key);
+        if (v != null) {
+            return v;
+        }
+        synchronized (this) {
+            v = get(key);
+            if (v == null) {
+                v = factory.apply(key);
+                put(key, v);
+            }
+            return v;
+        }
+    }
+
+    /**
+     * Store a value for a key, replacing the value it had before
+     *
+     * @param key   the key to store the value under
+     * @param value the value, never null
+     */
+    synchronized void put(int key, V value) {
+        Table old = table;
+        boolean present = get(key) != null;
+        int size = present ? old.size : old.size + 1;
+        int capacity = old.keys.length;
+        if (size * 2 > capacity) {
+            capacity *= 2;
+        }
+        Table t = new Table(capacity, size);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.values[i] != null && old.keys[i] != key) {
+                insert(t, old.keys[i], old.values[i]);
+            }
+        }
+        insert(t, key, value);
+        table = t;
+    }
+
+    /**
+     * Call an action with every value and its key, as stored when the call started
+     *
+     * @param action called once per key
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(ObjIntConsumer<V> action) {
+        Table t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            if (t.values[i] != null) {
+                action.accept((V) t.values[i], t.keys[i]);
+            }
+        }
+    }
+
+    private static void insert(Table t, int key, Object value) {
+        int mask = t.keys.length - 1;
+        int i = mix(key) & mask;
+        while (t.values[i] != null) {
+            i = (i + 1) & mask;
+        }
+        t.keys[i] = key;
+        t.values[i] = value;
+    }
+
+    /**
+     * Spread the bits of a key, topics live in the high half and subtopics are
+     * mostly small numbers
+     */
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
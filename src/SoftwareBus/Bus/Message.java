@@ -4,6 +4,12 @@ import java.io.Serializable;
 import java.util.Arrays;
 
 public class Message implements Serializable {
+    /**
+     * Pinned to the value Java derived for the original class so ObjectStream clients
+     * built before this class changed can still deserialize our messages
+     */
+    private static final long serialVersionUID = 1581964267231981433L;
+
     /**
      * As specified in class, the contents of a message are stored as an array of integers
      */
@@ -12,6 +18,11 @@ public class Message implements Serializable {
      * The topic of this message instance
      */
     private Topic messageTopic;
+    /**
+     * Timestamps.now() when the message was published, 0 when unknown.
+     * Not part of the serialized form, OBJECT_STREAM messages arrive without it
+     */
+    private transient long publishedAt;
 
     /**
      * To create a message, provide an integer array of the following format
@@ -22,7 +33,7 @@ public class Message implements Serializable {
      * @param contents the integer array specifying the message contents
      */
     public Message(int[] contents) {
-        this.messageTopic = new Topic(contents[0], contents[1]);
+        this.messageTopic = Topic.of(contents[0], contents[1]);
         this.bodyContents = new int[4];
         for (int i = 2; i < contents.length; i++) {
             bodyContents[i - 2] = contents[i];
@@ -41,6 +52,14 @@ public class Message implements Serializable {
         this.bodyContents = body;
     }
 
+    /**
+     * Rebuild a message read off the wire, with the time it was published
+     */
+    Message(Topic t, int[] body, long publishedAt) {
+        this(t, body);
+        this.publishedAt = publishedAt;
+    }
+
     /**
      * Get the topic contained in this message
      *
@@ -77,6 +96,19 @@ public class Message implements Serializable {
         return new int[]{bodyContents[0], bodyContents[1], bodyContents[2], bodyContents[3]};
     }
 
+    /**
+     * Copy the message body into an array you already have, without allocating
+     *
+     * @param into an array with room for at least 4 ints, filled with b1...b4
+     * @return the array passed in
+     */
+    public int[] fullBody(int[] into) {
+        for (int i = 0; i < 4; i++) {
+            into[i] = bodyAt(i);
+        }
+        return into;
+    }
+
     /**
      * Get the b1 field of this message
      *
@@ -113,6 +145,25 @@ public class Message implements Serializable {
         return bodyContents[3];
     }
 
+    /**
+     * Get when this message was published, as Timestamps.now() in the publishing process
+     *
+     * @return the timestamp in nanoseconds since the epoch, 0 if unknown
+     */
+    long publishedAt() {
+        return publishedAt;
+    }
+
+    /**
+     * Get a body field by index, treating fields missing from a short body as 0
+     *
+     * @param i the index of the body field, 0 for b1 through 3 for b4
+     * @return the integer in that field, or 0 if the body does not have it
+     */
+    int bodyAt(int i) {
+        return i < bodyContents.length ? bodyContents[i] : 0;
+    }
+
     /**
      * Get a string representation of the contents of this message in the following format:
      * topic: t, subtopic: s, BODY: b1, b2, b3, b4
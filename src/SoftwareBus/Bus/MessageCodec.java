@@ -0,0 +1,105 @@
+package SoftwareBus.Bus;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Reads and writes messages on one socket using one WireFormat
+ */
+interface MessageCodec {
+
+    /**
+     * Write a message to the other end of the socket
+     *
+     * @param m the message that is being written
+     * @throws IOException if the socket can no longer be written to
+     */
+    default void write(Message m) throws IOException {
+        synchronized (this) {
+            append(m);
+            flush();
+        }
+    }
+
+    /**
+     * Buffer a message without sending it, so several can leave in one write
+     *
+     * @param m the message that is being written
+     * @throws IOException if the buffer filled and could not be written out
+     */
+    void append(Message m) throws IOException;
+
+    /**
+     * Buffer a message given as its fields, so publishers with the fields at hand
+     * do not need to build a Message
+     *
+     * @param topic    the topic number
+     * @param subtopic the subtopic number
+     * @param b1       the b1 field
+     * @param b2       the b2 field
+     * @param b3       the b3 field
+     * @param b4       the b4 field
+     * @throws IOException if the buffer filled and could not be written out
+     */
+    void append(int topic, int subtopic, int b1, int b2, int b3, int b4) throws IOException;
+
+    /**
+     * Send every message appended since the last flush
+     *
+     * @throws IOException if the socket can no longer be written to
+     */
+    void flush() throws IOException;
+
+    /**
+     * Tell the server this client wants messages of a topic, so it can stop sending the
+     * ones nobody on this client subscribed to
+     *
+     * @param t the topic being subscribed to, subtopic 0 meaning every subtopic
+     * @throws IOException if the socket can no longer be written to
+     */
+    void subscribe(Topic t) throws IOException;
+
+    /**
+     * Ask the server to keep the last message of a topic and send it to clients that
+     * subscribe after it was published
+     *
+     * @param t the topic to retain, subtopic 0 meaning every subtopic
+     * @throws IOException if the socket can no longer be written to
+     */
+    void retain(Topic t) throws IOException;
+
+    /**
+     * Block until the next message arrives from the other end of the socket
+     *
+     * @return the message that was read
+     * @throws IOException if the socket can no longer be read from
+     */
+    Message read() throws IOException;
+
+    /**
+     * Open the codec a client uses. A BINARY client announces itself with
+     * BinaryCodec.MAGIC and waits for the server to echo it back
+     *
+     * @param socket the socket connected to the BUS server instance
+     * @param format the format the client wants to speak
+     * @return the codec for the socket
+     * @throws IOException if the server does not accept the format
+     */
+    static MessageCodec forClient(Socket socket, WireFormat format) throws IOException {
+        if (format == WireFormat.OBJECT_STREAM) {
+            return new ObjectStreamCodec(socket.getInputStream(), socket.getOutputStream());
+        }
+        DataOutputStream out = BinaryCodec.output(socket.getOutputStream());
+        out.writeInt(BinaryCodec.MAGIC);
+        out.flush();
+        DataInputStream in = BinaryCodec.input(socket.getInputStream());
+        int ack = in.readInt();
+        if (ack != BinaryCodec.MAGIC) {
+            throw new IOException("BUS server does not speak the binary wire format, run with -D"
+                    + WireFormat.PROPERTY + "=object");
+        }
+        return new BinaryCodec(in, out);
+    }
+}
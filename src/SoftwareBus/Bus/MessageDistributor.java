@@ -1,64 +1,127 @@
 package SoftwareBus.Bus;
 
+import Metrics.LatencyHistogram;
+import Metrics.Meter;
+import Metrics.MetricsRegistry;
+import Metrics.Timestamps;
+
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.BindException;
-import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class MessageDistributor {
 
     /**
-     * For Server BUS instance, a list of all the clients' ObjectOutputStreams
+     * The connections shared by every Bus in this JVM, one per port and wire format
      */
-    private BlockingDeque<ObjectOutputStream> clients = new LinkedBlockingDeque<>();
+    private static final Map<String, MessageDistributor> SHARED = new ConcurrentHashMap<>();
 
     /**
-     * As a client, the socket to talk to the BUS server instance
+     * The buses reading from this connection, keyed by the Topic.key() of each topic
+     * they subscribed to. Arrays are replaced rather than grown so routing never locks
      */
-    private Socket socket;
+    private final IntMap<Bus[]> routes = new IntMap<>();
+
+    /**
+     * The publish meter of every topic sent on this connection, keyed by Topic.key()
+     */
+    private final IntMap<Meter> published = new IntMap<>();
+
+    /**
+     * The publish to delivery latency of every topic read from this connection,
+     * keyed by Topic.key()
+     */
+    private final IntMap<LatencyHistogram> latencies = new IntMap<>();
+
+    /**
+     * The topics retain() was asked for, keyed by Topic.key(), subtopic 0 meaning every subtopic
+     */
+    private final IntMap<Boolean> retained = new IntMap<>();
+
+    /**
+     * The last message read of every retained topic, keyed by Topic.key(). The server only
+     * replays retained messages on a connection's first subscribe, so buses attaching to a
+     * topic later get them from here. Updated and replayed while holding this distributor
+     */
+    private final IntMap<AtomicReference<Message>> lastRetained = new IntMap<>();
+
+    /**
+     * Guards the batch of messages appended but not yet flushed
+     */
+    private final Object batchLock = new Object();
+
+    /**
+     * How many messages fill a batch, batching is off while this is 1 or less
+     */
+    private int maxBatch = 1;
+
+    /**
+     * How long the first message of a batch may wait for others, in milliseconds
+     */
+    private long lingerMillis;
+
     /**
-     * As a client, the ObjectInputStream to receive messages from the server BUS instance
+     * How many messages were appended since the last flush
      */
-    private ObjectInputStream in;
+    private int pending;
+
+    /**
+     * Counts the flushes, so a linger timer can tell its batch has already been sent
+     */
+    private long batch;
+
+    /**
+     * Flushes a batch once its linger time is up, created when batching is first turned on
+     */
+    private ScheduledExecutorService lingerTimer;
+
     /**
-     * As a client, the ObjectOutputStream to send messages to the server BUS instance
+     * The server BUS instance, if this distributor was the first to claim the port
      */
-    private ObjectOutputStream out;
+    private Broker broker;
 
     /**
-     * Makes a new message distributor on a provided port number
+     * As a client, the socket to talk to the BUS server instance
+     */
+    private Socket socket;
+    /**
+     * As a client, the codec used to send and receive messages with the server BUS instance
+     */
+    private MessageCodec codec;
+
+    /**
+     * Makes a new message distributor on a provided port number, using the
+     * wire format selected by the softwarebus.wire system property
      *
      * @param port the port number you are connecting to
      */
     public MessageDistributor(int port) { //TODO maybe delete prot
-        try {
-            ServerSocket serverSocket = new ServerSocket(port);
-            new Thread(() -> {
-                while (true) {
-                    try {
-                        Socket s = serverSocket.accept();
-                        clients.add(new ObjectOutputStream(s.getOutputStream()));
-                        run(new ObjectInputStream(s.getInputStream()));
-
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
+        this(port, WireFormat.fromSystemProperty());
+    }
 
-                }
-            }).start();
-            socket = new Socket("localhost", port);
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
+    /**
+     * Makes a new message distributor on a provided port number. The first distributor
+     * to claim the port also becomes the server BUS instance every other one connects to
+     *
+     * @param port   the port number you are connecting to
+     * @param format the wire format this client speaks to the server
+     */
+    public MessageDistributor(int port, WireFormat format) {
+        try {
+            broker = Broker.start(port);
+            connect(port, format);
         } catch (BindException e) {
             try {
-                socket = new Socket("localhost", port);
-                out = new ObjectOutputStream(socket.getOutputStream());
-                in = new ObjectInputStream(socket.getInputStream());
+                connect(port, format);
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
@@ -69,75 +132,338 @@ public class MessageDistributor {
     }
 
     /**
-     * A method to send all connect clients a message
+     * Get the connection every Bus in this JVM shares for a port and wire format,
+     * opening it the first time it is asked for
+     *
+     * @param port   the port number you are connecting to
+     * @param format the wire format spoken to the server
+     * @return the shared message distributor
+     */
+    public static MessageDistributor shared(int port, WireFormat format) {
+        return SHARED.computeIfAbsent(port + ":" + format, k -> {
+            MessageDistributor shared = new MessageDistributor(port, format);
+            new Thread(shared::demultiplex, "SoftwareBus-Reader").start();
+            return shared;
+        });
+    }
+
+    /**
+     * Connect to the server BUS instance as a client
+     *
+     * @param port   the port the server is listening on
+     * @param format the wire format to speak
+     * @throws IOException if the connection or handshake fails
+     */
+    private void connect(int port, WireFormat format) throws IOException {
+        socket = new Socket("localhost", port);
+        socket.setTcpNoDelay(true);
+        codec = MessageCodec.forClient(socket, format);
+    }
+
+    /**
+     * A method for the client to get the next message they have received.
+     * Not for use on a shared distributor, whose messages are read by its own thread
+     *
+     * @return the next message recived
+     */
+    public Message nextMessage() {
+        try {
+            return codec.read();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A method to register a subscription with the server, so it only sends this
+     * client messages that someone here is subscribed to
+     *
+     * @param t the topic being subscribed to
+     */
+    public void subscribe(Topic t) {
+        try {
+            codec.subscribe(t);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A method to ask the server to keep the last message of a topic and replay it to
+     * every client that subscribes to it later
+     *
+     * @param t the topic being retained, subtopic 0 meaning every subtopic
+     */
+    public void retain(Topic t) {
+        retained.computeIfAbsent(t.key(), k -> Boolean.TRUE);
+        try {
+            codec.retain(t);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Route messages of a topic arriving on this connection to a bus. The server is
+     * only told about a topic the first time any bus asks for it, and only replays its
+     * retained messages then, so a bus attaching later is handed the last retained
+     * messages read so far
      *
-     * @param m the message that will be sent
-     */
-    private void sendToAll(Message m) {
-        for (ObjectOutputStream client : clients) {
-            synchronized (client) {
-                try {
-                    client.writeObject(m);
-                    client.flush();
-                    client.reset();
-                } catch (IOException e) {
-                    e.printStackTrace();
+     * @param bus the bus that subscribed
+     * @param t   the topic it subscribed to, subtopic 0 meaning every subtopic
+     */
+    synchronized void attach(Bus bus, Topic t) {
+        Bus[] old = routes.get(t.key());
+        if (old == null) {
+            routes.put(t.key(), new Bus[]{bus});
+            subscribe(t);
+            // The server already sends this topic for the wildcard route and won't replay it
+            if (t.subtopic() != 0 && routes.get(Topic.key(t.topic(), 0)) != null) {
+                replayRetained(bus, t);
+            }
+        } else if (!contains(old, bus)) {
+            Bus[] grown = Arrays.copyOf(old, old.length + 1);
+            grown[old.length] = bus;
+            routes.put(t.key(), grown);
+            replayRetained(bus, t);
+        }
+    }
+
+    /**
+     * Hand a bus the last retained message of every subtopic it just attached to,
+     * callers hold this distributor
+     */
+    private void replayRetained(Bus bus, Topic t) {
+        lastRetained.forEach((last, key) -> {
+            Message m = last.get();
+            if (m == null || (key != t.key() && (t.subtopic() != 0 || m.topicInt() != t.topic()))) {
+                return;
+            }
+            // Skip what the bus already gets through its other subscription to the topic
+            int wildcardKey = Topic.key(m.topicInt(), 0);
+            boolean routed = (key == t.key())
+                    ? key != wildcardKey && contains(routes.get(wildcardKey), bus)
+                    : contains(routes.get(key), bus);
+            if (!routed) {
+                bus.deliver(m, key);
+            }
+        });
+    }
+
+    private boolean isRetained(int key, Message m) {
+        return retained.get(key) != null || retained.get(Topic.key(m.topicInt(), 0)) != null;
+    }
+
+    /**
+     * Read every message arriving on this connection and hand it to each bus subscribed
+     * to its exact topic or to subtopic 0 of its topic, once per bus. Shared distributors
+     * run this on the one thread reading for every bus in the JVM
+     */
+    private void demultiplex() {
+        while (true) {
+            Message m = nextMessage();
+            if (m == null) {
+                continue;
+            }
+            int key = m.getTopics().key();
+            if (MetricsRegistry.ENABLED && m.publishedAt() != 0) {
+                latency(key, m).record(Timestamps.now() - m.publishedAt());
+            }
+            if (isRetained(key, m)) {
+                // Cached and routed as one step, so attach() never replays a value older than one it routes
+                synchronized (this) {
+                    lastRetained.computeIfAbsent(key, k -> new AtomicReference<>()).set(m);
+                    route(m, key);
                 }
+            } else {
+                route(m, key);
             }
         }
     }
 
     /**
-     * The server connection will run by reading all incoming messages and
-     * send each one that is received to all connected clients
-     *
-     * @param in the input stream of the server
-     */
-    private void run(ObjectInputStream in) {
-        new Thread(() -> {
-            while (true) {
-                try {
-                    Object obj = in.readObject();
-                    if (obj == null) {
-                        sendToAll(null);
-                    } else {
-                        sendToAll((Message) obj);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+     * Hand a message to each bus subscribed to its exact topic or to subtopic 0 of
+     * its topic, once per bus
+     */
+    private void route(Message m, int key) {
+        Bus[] exact = routes.get(key);
+        if (exact != null) {
+            for (Bus bus : exact) {
+                bus.deliver(m, key);
+            }
+        }
+        int wildcardKey = Topic.key(m.topicInt(), 0);
+        Bus[] wildcard = (wildcardKey == key) ? null : routes.get(wildcardKey);
+        if (wildcard != null) {
+            for (Bus bus : wildcard) {
+                if (!contains(exact, bus)) {
+                    bus.deliver(m, key);
                 }
+            }
+        }
+    }
 
+    private LatencyHistogram latency(int key, Message m) {
+        LatencyHistogram h = latencies.get(key);
+        if (h == null) {
+            h = latencies.computeIfAbsent(key, k -> MetricsRegistry.global()
+                    .histogram("softwarebus.latency." + m.topicInt() + "." + m.subtopicInt()));
+        }
+        return h;
+    }
+
+    /**
+     * Count a publish of a topic
+     */
+    private void published(Topic t) {
+        if (!MetricsRegistry.ENABLED) {
+            return;
+        }
+        Meter meter = published.get(t.key());
+        if (meter == null) {
+            meter = published.computeIfAbsent(t.key(), k -> MetricsRegistry.global()
+                    .meter("softwarebus.publish." + t.topic() + "." + t.subtopic()));
+        }
+        meter.mark();
+    }
+
+    private static boolean contains(Bus[] buses, Bus bus) {
+        if (buses == null) {
+            return false;
+        }
+        for (Bus b : buses) {
+            if (b == bus) {
+                return true;
             }
+        }
+        return false;
+    }
 
-        }).start();
+    /**
+     * A method to send a message over the network. While batching is on the message may
+     * wait up to the linger time for others to share its write
+     *
+     * @param m the message that is being sent
+     */
+    public void send(Message m) {
+        published(m.getTopics());
+        try {
+            synchronized (this.batchLock) {
+                codec.append(m);
+                appended();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
-     * A method for the client to get the next message they have received
+     * A method to send a message given as its fields over the network, without
+     * building a Message for it
      *
-     * @return the next message recived
+     * @param t  the topic of the message
+     * @param b1 the b1 field
+     * @param b2 the b2 field
+     * @param b3 the b3 field
+     * @param b4 the b4 field
      */
-    public Message nextMessage() {
+    public void send(Topic t, int b1, int b2, int b3, int b4) {
+        published(t);
         try {
-            Object obj = in.readObject();
-            return (obj == null) ? null : (Message) obj;
-        } catch (Exception e) {
+            synchronized (this.batchLock) {
+                codec.append(t.topic(), t.subtopic(), b1, b2, b3, b4);
+                appended();
+            }
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     /**
-     * A method to send a message over the network
+     * Flush the message just appended now, or leave it to its batch when batching is on.
+     * Callers hold batchLock
+     */
+    private void appended() throws IOException {
+        if (this.maxBatch <= 1) {
+            codec.flush();
+        } else if (++this.pending >= this.maxBatch) {
+            flushBatch();
+        } else if (this.pending == 1) {
+            long current = this.batch;
+            this.lingerTimer.schedule(() -> lingerExpired(current), this.lingerMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * A method to send several messages over the network in one write
      *
-     * @param m the message that is being sent
+     * @param messages the messages that are being sent, in order
      */
-    public void send(Message m) {
+    public void sendAll(List<Message> messages) {
         try {
-            out.writeObject(m);
-            out.flush();
+            synchronized (this.batchLock) {
+                for (Message m : messages) {
+                    published(m.getTopics());
+                    codec.append(m);
+                }
+                flushBatch();
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Hold published messages back so bursts leave in one write. A batch is sent once it
+     * has maxMessages messages, or lingerMillis after its first message, whichever comes
+     * first. Applies to every bus sharing this connection
+     *
+     * @param lingerMillis how long the first message of a batch may wait, in milliseconds
+     * @param maxMessages  how many messages fill a batch, 1 or less turns batching off
+     */
+    public void setBatching(long lingerMillis, int maxMessages) {
+        synchronized (this.batchLock) {
+            try {
+                flushBatch();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            this.lingerMillis = Math.max(0, lingerMillis);
+            this.maxBatch = maxMessages;
+            if (maxMessages > 1 && this.lingerTimer == null) {
+                this.lingerTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "SoftwareBus-Linger");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
+    /**
+     * Flush a batch whose linger time is up, unless it was flushed already; the messages
+     * pending then belong to a later batch with a linger time of its own
+     */
+    private void lingerExpired(long expired) {
+        synchronized (this.batchLock) {
+            if (expired != this.batch) {
+                return;
+            }
+            try {
+                flushBatch();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Write out every appended message, callers hold batchLock
+     */
+    private void flushBatch() throws IOException {
+        this.pending = 0;
+        this.batch++;
+        codec.flush();
+    }
+
 }
@@ -0,0 +1,79 @@
+package SoftwareBus.Bus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * The original wire format, every message goes through Java serialization
+ */
+class ObjectStreamCodec implements MessageCodec {
+
+    /**
+     * The first two bytes ObjectOutputStream writes on every stream
+     */
+    static final int STREAM_MAGIC = 0xACED;
+
+    private final ObjectInputStream in;
+    private final ObjectOutputStream out;
+
+    /**
+     * The output stream is opened first so the stream header is sent before
+     * waiting on the header from the other side
+     *
+     * @param in  the raw input stream of the socket
+     * @param out the raw output stream of the socket
+     * @throws IOException if the stream headers cannot be exchanged
+     */
+    ObjectStreamCodec(InputStream in, OutputStream out) throws IOException {
+        this.out = new ObjectOutputStream(out);
+        this.out.flush();
+        this.in = new ObjectInputStream(in);
+    }
+
+    @Override
+    public synchronized void append(Message m) throws IOException {
+        out.writeObject(m);
+    }
+
+    @Override
+    public void append(int topic, int subtopic, int b1, int b2, int b3, int b4) throws IOException {
+        append(new Message(Topic.of(topic, subtopic), new int[]{b1, b2, b3, b4}));
+    }
+
+    /**
+     * Also resets the stream so the objects written are not cached forever
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+        out.reset();
+    }
+
+    /**
+     * Servers built before subscriptions were forwarded would broadcast the request as a
+     * message, so OBJECT_STREAM clients keep receiving everything and filter locally
+     */
+    @Override
+    public void subscribe(Topic t) {
+    }
+
+    /**
+     * Control requests cannot be sent in this format, retained topics have to be
+     * configured on the server or asked for by a BINARY client
+     */
+    @Override
+    public void retain(Topic t) {
+    }
+
+    @Override
+    public Message read() throws IOException {
+        try {
+            return (Message) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
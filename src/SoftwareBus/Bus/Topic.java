@@ -3,6 +3,16 @@ package SoftwareBus.Bus;
 import java.io.Serializable;
 
 public class Topic implements Serializable {
+    /**
+     * Pinned to the value Java derived for the original class so ObjectStream clients
+     * built before this class changed can still deserialize our topics
+     */
+    private static final long serialVersionUID = -4057116310010693010L;
+
+    /**
+     * The canonical instance of every topic handed out by Topic.of, keyed by Topic.key()
+     */
+    private static final IntMap<Topic> INTERNED = new IntMap<>();
 
     /**
      * The topic portion of this topic object
@@ -24,6 +34,25 @@ public class Topic implements Serializable {
         this.subtopic = subtopic;
     }
 
+    /**
+     * Get the canonical instance of a topic, creating it the first time it is asked for.
+     * Use this instead of the constructor on paths that run for every message, so
+     * looking up a topic does not allocate
+     *
+     * @param topic    the topic number
+     * @param subtopic the subtopic number
+     * @return the one shared topic instance for this topic and subtopic
+     */
+    public static Topic of(int topic, int subtopic) {
+        int key = key(topic, subtopic);
+        Topic t = INTERNED.get(key);
+        if (t == null) {
+            t = INTERNED.computeIfAbsent(key, k -> new Topic(topic, subtopic));
+        }
+        // Numbers outside 16 bits share keys, those are not interned
+        return (t.topic == topic && t.subtopic == subtopic) ? t : new Topic(topic, subtopic);
+    }
+
     /**
      * Get the topic portion of this topic instance
      *
@@ -42,6 +71,37 @@ public class Topic implements Serializable {
         return subtopic;
     }
 
+    /**
+     * Get the key this topic is indexed by inside a Bus
+     *
+     * @return the key of this topic
+     */
+    int key() {
+        return key(topic, subtopic);
+    }
+
+    /**
+     * Pack a topic and subtopic into one int, topic in the high 16 bits and subtopic in
+     * the low 16 bits. Topics and subtopics are expected to fit in 16 bits
+     *
+     * @param topic    the topic number
+     * @param subtopic the subtopic number
+     * @return the packed key
+     */
+    static int key(int topic, int subtopic) {
+        return topic << 16 | (subtopic & 0xFFFF);
+    }
+
+    /**
+     * Get the key of subtopic 0 of the topic a key was packed from
+     *
+     * @param key a key made by key(int, int)
+     * @return the key of the same topic with subtopic 0
+     */
+    static int wildcardKey(int key) {
+        return key & 0xFFFF0000;
+    }
+
     /**
      * Get a string representation of this topic instance in the following format
      * topic: t, subtopic, s
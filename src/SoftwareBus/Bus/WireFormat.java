@@ -0,0 +1,35 @@
+package SoftwareBus.Bus;
+
+/**
+ * The encodings a client can use to talk to the BUS server instance.
+ * The server detects which one a client speaks from the first bytes it sends,
+ * so clients using either format can share one server.
+ */
+public enum WireFormat {
+    /**
+     * Every message is written with ObjectOutputStream.writeObject.
+     * This is the original format and is kept for clients built before BINARY existed
+     */
+    OBJECT_STREAM,
+    /**
+     * Every message is written as a fixed 32 byte frame of six ints and a timestamp
+     * {t,s,b1,b2,b3,b4,publishedAt}
+     */
+    BINARY;
+
+    /**
+     * The system property that selects the format new clients use
+     */
+    public static final String PROPERTY = "softwarebus.wire";
+
+    /**
+     * Get the format selected by the softwarebus.wire system property.
+     * "object" selects OBJECT_STREAM, anything else (or nothing) selects BINARY
+     *
+     * @return the selected format
+     */
+    public static WireFormat fromSystemProperty() {
+        String value = System.getProperty(PROPERTY, "binary");
+        return value.equalsIgnoreCase("object") ? OBJECT_STREAM : BINARY;
+    }
+}
@@ -20,9 +20,14 @@ public class ToasterTimer {
         new Thread(() -> {
             //Continuously check for updates and make changes accordingly
             while (true) {
-                //Get the oldest unread message on the subject of the timer status
-                //  May be null if there are no unread messages
-                Message nobUpdate = toasterBus.getMessage(Topics.NOB_STATUS);
+                //Wait up to a second for the next message on the subject of the nob status
+                //  Null if the nob was not moved within the second
+                Message nobUpdate;
+                try {
+                    nobUpdate = toasterBus.take(Topics.NOB_STATUS, 1000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
                 if (nobUpdate != null) {
                     //If the message was not null and the nob is pushed down
                     if (nobUpdate.bodyOne() == 1) {
@@ -43,12 +48,6 @@ public class ToasterTimer {
                     System.out.printf("Timer at %d \n", timer);
                     toasterBus.publish(new Message(Topics.TIMER_STATUS, new int[]{timer}));
                 }
-                //Lets only look for updates and make changes once a second
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
             }
         }).start();
     }
@@ -0,0 +1,33 @@
+package Wiring;
+
+/**
+ * Typed handle on a BOOLEAN topic of an EventBus, e.g. a toggle.
+ * Publishing and subscribing through it never boxes the value or builds an Event
+ * on buses that support it (InMemoryEventBus, RingBufferEventBus).
+ *
+ * Obtain one with EventBus.booleanChannel(topic).
+ */
+public final class BooleanChannel {
+    private final EventBus bus;
+    private final Topics topic;
+
+    BooleanChannel(EventBus bus, Topics topic) {
+        if (topic.payload() != Topics.Payload.BOOLEAN) {
+            throw new IllegalArgumentException(topic + " carries " + topic.payload() + ", not BOOLEAN");
+        }
+        this.bus = bus;
+        this.topic = topic;
+    }
+
+    public Topics topic() {
+        return topic;
+    }
+
+    public void publish(boolean value) {
+        bus.publish(topic, value);
+    }
+
+    public void subscribe(BooleanConsumer handler) {
+        bus.subscribeBoolean(topic, handler);
+    }
+}
@@ -0,0 +1,9 @@
+package Wiring;
+
+/**
+ * The boolean counterpart of java.util.function.IntConsumer, which the JDK lacks.
+ */
+@FunctionalInterface
+public interface BooleanConsumer {
+    void accept(boolean value);
+}
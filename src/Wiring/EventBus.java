@@ -1,12 +1,17 @@
 package Wiring;
 
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * Minimal pub/sub facade used by the rest of the elevator system.
  *
- * Implementations (e.g., InMemoryEventBus, SoftwareBusAdapter) provide
- * the actual storage and dispatch behavior.
+ * Implementations (e.g., InMemoryEventBus, RingBufferEventBus) provide
+ * the actual storage and dispatch behavior; SoftwareBusAdapter bridges one
+ * to the socket SoftwareBus.
+ *
+ * Hot paths should prefer the typed handles from intChannel()/booleanChannel(),
+ * which skip boxing and Event allocation.
  */
 public interface EventBus {
 
@@ -22,8 +27,66 @@ public interface EventBus {
      */
     void publish(Topics topic, Object payload);
 
+    /**
+     * Publish an int payload (a floor, usually). Implementations that can carry
+     * it without boxing override this.
+     */
+    default void publish(Topics topic, int value) {
+        publish(topic, (Object) value);
+    }
+
+    /**
+     * Publish a boolean payload (a toggle). Implementations that can carry
+     * it without boxing override this.
+     */
+    default void publish(Topics topic, boolean value) {
+        publish(topic, (Object) value);
+    }
+
     /**
      * Subscribe a handler that will be called for every event of the given topic.
      */
     void subscribe(Topics topic, Consumer<Event> handler);
+
+    /**
+     * Subscribe a handler to the int payloads of a topic. Implementations that can
+     * deliver without boxing or building an Event override this.
+     */
+    default void subscribeInt(Topics topic, IntConsumer handler) {
+        subscribe(topic, e -> {
+            if (e.payload() instanceof Integer value) {
+                handler.accept(value);
+            }
+        });
+    }
+
+    /**
+     * Subscribe a handler to the boolean payloads of a topic. Implementations that can
+     * deliver without boxing or building an Event override this.
+     */
+    default void subscribeBoolean(Topics topic, BooleanConsumer handler) {
+        subscribe(topic, e -> {
+            if (e.payload() instanceof Boolean value) {
+                handler.accept(value);
+            }
+        });
+    }
+
+    /**
+     * Typed handle on an INT topic (see Topics.payload()).
+     *
+     * @throws IllegalArgumentException if the topic does not carry an int
+     */
+    default IntChannel intChannel(Topics topic) {
+        return new IntChannel(this, topic);
+    }
+
+    /**
+     * Typed handle on a BOOLEAN topic (see Topics.payload()).
+     *
+     * @throws IllegalArgumentException if the topic does not carry a boolean
+     */
+    default BooleanChannel booleanChannel(Topics topic) {
+        return new BooleanChannel(this, topic);
+    }
 }
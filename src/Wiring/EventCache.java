@@ -0,0 +1,65 @@
+package Wiring;
+
+import Wiring.EventBus.Event;
+
+/**
+ * Shared immutable Events for the payloads that dominate elevator traffic:
+ * small ints (floors), booleans (toggles) and null. Handing these out instead
+ * of building a new Event keeps the publish paths allocation free.
+ */
+final class EventCache {
+
+    /**
+     * Int payloads below this have a cached Event per topic, floors fit easily
+     */
+    static final int CACHED_INTS = 256;
+
+    private static final Event[][] INTS;
+    private static final Event[] TRUES;
+    private static final Event[] FALSES;
+    private static final Event[] NULLS;
+
+    static {
+        Topics[] topics = Topics.values();
+        INTS = new Event[topics.length][CACHED_INTS];
+        TRUES = new Event[topics.length];
+        FALSES = new Event[topics.length];
+        NULLS = new Event[topics.length];
+        for (Topics topic : topics) {
+            int t = topic.ordinal();
+            for (int v = 0; v < CACHED_INTS; v++) {
+                INTS[t][v] = new Event(topic, v);
+            }
+            TRUES[t] = new Event(topic, Boolean.TRUE);
+            FALSES[t] = new Event(topic, Boolean.FALSE);
+            NULLS[t] = new Event(topic, null);
+        }
+    }
+
+    private EventCache() {
+    }
+
+    static Event of(Topics topic, int value) {
+        if (value >= 0 && value < CACHED_INTS) {
+            return INTS[topic.ordinal()][value];
+        }
+        return new Event(topic, value);
+    }
+
+    static Event of(Topics topic, boolean value) {
+        return value ? TRUES[topic.ordinal()] : FALSES[topic.ordinal()];
+    }
+
+    static Event of(Topics topic, Object payload) {
+        if (payload == null) {
+            return NULLS[topic.ordinal()];
+        }
+        if (payload instanceof Integer value) {
+            return of(topic, value.intValue());
+        }
+        if (payload instanceof Boolean value) {
+            return of(topic, value.booleanValue());
+        }
+        return new Event(topic, payload);
+    }
+}
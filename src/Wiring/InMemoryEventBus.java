@@ -1,33 +1,279 @@
 package Wiring;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import Metrics.MetricsRegistry;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
+/**
+ * EventBus living in one JVM.
+ *
+ * Synchronous by default: publish() calls every subscriber on the publisher's
+ * thread before returning, which keeps tests deterministic.
+ *
+ * Asynchronous when built with an Executor (or through async()): every topic
+ * gets a lane, a queue drained by one task at a time on the executor. Events
+ * of one topic reach subscribers in publish order, events of different topics
+ * may be handled in parallel, and publish() never waits on a subscriber.
+ *
+ * Order across topics is not kept on those lanes. A subscriber that depends on it
+ * (ElevatorController and MockSim do, a CTRL_CMD_RETARGET must not overtake the
+ * CTRL_CMD_MOVE_TO it amends) subscribes through its own view from subscriber():
+ * the handlers of one view share a lane, so they see every topic they follow in
+ * publish order, one event at a time, while other subscribers run on their own lanes.
+ */
 public class InMemoryEventBus implements EventBus {
 
-    private final Map<Topics, CopyOnWriteArrayList<Consumer<Event>>> subscribers =
-            new ConcurrentHashMap<>();
+    /**
+     * How many events a lane hands over before giving its worker back, so one
+     * busy topic cannot starve the others
+     */
+    private static final int LANE_BATCH = 256;
+
+    /**
+     * Subscribers per topic, indexed by ordinal
+     */
+    private final Subscribers[] subscribers = Subscribers.forAllTopics();
+
+    /**
+     * One lane per topic, indexed by ordinal. Null when synchronous
+     */
+    private final Lane[] lanes;
+
+    private final Executor executor;
+
+    /**
+     * The subscriber lanes following each topic, indexed by ordinal, replaced on subscribe
+     */
+    private volatile Lane[][] followers;
+
+    /**
+     * Synchronous bus, subscribers run on the publisher's thread.
+     */
+    public InMemoryEventBus() {
+        this.lanes = null;
+        this.executor = null;
+    }
+
+    /**
+     * Asynchronous bus, subscribers run on the executor with one lane per topic.
+     * Pass Executors.newVirtualThreadPerTaskExecutor() to drain lanes on virtual threads.
+     */
+    public InMemoryEventBus(Executor executor) {
+        this.lanes = new Lane[Topics.values().length];
+        this.executor = executor;
+        this.followers = new Lane[Topics.values().length][0];
+        for (Topics topic : Topics.values()) {
+            lanes[topic.ordinal()] = new Lane(subscribers);
+        }
+    }
+
+    /**
+     * Asynchronous bus draining its lanes on a pool of daemon worker threads.
+     */
+    public static InMemoryEventBus async() {
+        int workers = Math.min(Topics.values().length, Math.max(2, Runtime.getRuntime().availableProcessors()));
+        return new InMemoryEventBus(Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "EventBusWorker");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * True if subscribers run on worker threads rather than on the publisher's thread.
+     */
+    public boolean isAsync() {
+        return lanes != null;
+    }
+
+    /**
+     * A view of this bus for one subscriber. Handlers subscribed through it share one
+     * lane and see the events of all their topics in publish order, one at a time.
+     * Publishing through it is publishing on this bus. A synchronous bus already keeps
+     * that order and returns itself.
+     */
+    public EventBus subscriber() {
+        if (lanes == null) {
+            return this;
+        }
+        return new SubscriberView();
+    }
 
     @Override
     public void publish(Topics topic, Object payload) {
-        Event event = new Event(topic, payload);
+        subscribers[topic.ordinal()].published();
+        Event event = EventCache.of(topic, payload);
+
+        if (lanes != null) {
+            queue(topic, event);
+            return;
+        }
 
-        CopyOnWriteArrayList<Consumer<Event>> handlers = subscribers.get(topic);
-        if (handlers == null) {
+        subscribers[topic.ordinal()].deliver(event);
+    }
+
+    /**
+     * Synchronously, int subscribers get the value as is and an Event is only
+     * made (from the cache) if someone subscribed to Events.
+     */
+    @Override
+    public void publish(Topics topic, int value) {
+        subscribers[topic.ordinal()].published();
+        if (lanes != null) {
+            queue(topic, EventCache.of(topic, value));
             return;
         }
 
-        for (Consumer<Event> handler : handlers) {
-            handler.accept(event);
+        subscribers[topic.ordinal()].deliver(value);
+    }
+
+    @Override
+    public void publish(Topics topic, boolean value) {
+        subscribers[topic.ordinal()].published();
+        if (lanes != null) {
+            queue(topic, EventCache.of(topic, value));
+            return;
         }
+
+        subscribers[topic.ordinal()].deliver(value);
     }
 
     @Override
     public void subscribe(Topics topic, Consumer<Event> handler) {
-        subscribers
-                .computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>())
-                .add(handler);
+        subscribers[topic.ordinal()].add(handler);
+    }
+
+    @Override
+    public void subscribeInt(Topics topic, IntConsumer handler) {
+        subscribers[topic.ordinal()].addInt(handler);
+    }
+
+    @Override
+    public void subscribeBoolean(Topics topic, BooleanConsumer handler) {
+        subscribers[topic.ordinal()].addBoolean(handler);
+    }
+
+    /**
+     * Hand an event to its topic's lane and to every subscriber lane following the topic.
+     * One publish at a time, so all lanes queue events in the same order and an event
+     * published in reaction to another never reaches a lane ahead of it
+     */
+    private synchronized void queue(Topics topic, Event event) {
+        long publishedAt = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
+        lanes[topic.ordinal()].offer(event, publishedAt);
+        for (Lane lane : followers[topic.ordinal()]) {
+            lane.offer(event, publishedAt);
+        }
+    }
+
+    private synchronized void follow(Topics topic, Lane lane) {
+        Lane[] current = followers[topic.ordinal()];
+        for (Lane following : current) {
+            if (following == lane) {
+                return;
+            }
+        }
+        Lane[][] grown = followers.clone();
+        grown[topic.ordinal()] = Arrays.copyOf(current, current.length + 1);
+        grown[topic.ordinal()][current.length] = lane;
+        followers = grown;
+    }
+
+    /**
+     * The handlers of one subscriber, on a lane of their own
+     */
+    private final class SubscriberView implements EventBus {
+        private final Subscribers[] own = Subscribers.forAllTopics();
+        private final Lane lane = new Lane(own);
+
+        @Override
+        public void publish(Topics topic, Object payload) {
+            InMemoryEventBus.this.publish(topic, payload);
+        }
+
+        @Override
+        public void publish(Topics topic, int value) {
+            InMemoryEventBus.this.publish(topic, value);
+        }
+
+        @Override
+        public void publish(Topics topic, boolean value) {
+            InMemoryEventBus.this.publish(topic, value);
+        }
+
+        @Override
+        public void subscribe(Topics topic, Consumer<Event> handler) {
+            own[topic.ordinal()].add(handler);
+            follow(topic, lane);
+        }
+
+        @Override
+        public void subscribeInt(Topics topic, IntConsumer handler) {
+            own[topic.ordinal()].addInt(handler);
+            follow(topic, lane);
+        }
+
+        @Override
+        public void subscribeBoolean(Topics topic, BooleanConsumer handler) {
+            own[topic.ordinal()].addBoolean(handler);
+            follow(topic, lane);
+        }
+    }
+
+    /**
+     * An event waiting in a lane, with the System.nanoTime() it was published at
+     */
+    private record Queued(Event event, long publishedAt) {
+    }
+
+    /**
+     * Events waiting for a set of subscribers: those of one topic, or those of one
+     * subscriber view. At most one drain task per lane is on the executor at a time,
+     * which is what keeps the lane in order.
+     */
+    private final class Lane implements Runnable {
+        private final Subscribers[] handlers;
+        private final Queue<Queued> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Lane(Subscribers[] handlers) {
+            this.handlers = handlers;
+        }
+
+        private void offer(Event event, long publishedAt) {
+            pending.add(new Queued(event, publishedAt));
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int handed = 0;
+            Queued queued;
+            while (handed < LANE_BATCH && (queued = pending.poll()) != null) {
+                Topics topic = queued.event().topic();
+                subscribers[topic.ordinal()].delivering(queued.publishedAt());
+                try {
+                    handlers[topic.ordinal()].deliver(queued.event());
+                } catch (RuntimeException e) {
+                    System.err.println("[BUS ] subscriber of " + topic + " failed: " + e);
+                    e.printStackTrace();
+                }
+                handed++;
+            }
+            scheduled.set(false);
+            // Pick up whatever arrived after the last poll, or the rest of a long backlog
+            if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
     }
 }
@@ -0,0 +1,35 @@
+package Wiring;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Typed handle on an INT topic of an EventBus, e.g. a floor.
+ * Publishing and subscribing through it never boxes the value or builds an Event
+ * on buses that support it (InMemoryEventBus, RingBufferEventBus).
+ *
+ * Obtain one with EventBus.intChannel(topic).
+ */
+public final class IntChannel {
+    private final EventBus bus;
+    private final Topics topic;
+
+    IntChannel(EventBus bus, Topics topic) {
+        if (topic.payload() != Topics.Payload.INT) {
+            throw new IllegalArgumentException(topic + " carries " + topic.payload() + ", not INT");
+        }
+        this.bus = bus;
+        this.topic = topic;
+    }
+
+    public Topics topic() {
+        return topic;
+    }
+
+    public void publish(int value) {
+        bus.publish(topic, value);
+    }
+
+    public void subscribe(IntConsumer handler) {
+        bus.subscribeInt(topic, handler);
+    }
+}
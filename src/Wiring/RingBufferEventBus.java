@@ -0,0 +1,301 @@
+package Wiring;
+
+import Metrics.MetricsRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * EventBus backed by a preallocated ring of mutable slots, for running the
+ * controller and sim in tight headless loops.
+ *
+ * Publishers claim a sequence number and fill the slot it maps to, int and
+ * boolean payloads go into primitive fields so nothing is boxed on the way in.
+ * One dispatcher thread walks the sequence in order and calls the subscribers,
+ * so every subscriber sees every event in publish order, across all topics.
+ *
+ * Int and boolean events reach channel subscribers (intChannel/booleanChannel)
+ * as primitives. Event subscribers get an Event from EventCache for small ints,
+ * booleans and null, so the common elevator traffic (floors and toggles)
+ * allocates nothing at all.
+ *
+ * A full ring makes publishers wait for the dispatcher. A subscriber publishing
+ * into a full ring is called back inline instead, since the dispatcher can't
+ * wait on itself.
+ *
+ * Timing every subscriber (see Metrics.MetricsRegistry) costs a few clock reads
+ * per event, which shows in tight loops. Run those with -Dmetrics=off.
+ */
+public final class RingBufferEventBus implements EventBus {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Waiting first spins, then yields, then parks, so a busy loop stays fast
+     * without starving the other side on a machine with few cores
+     */
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+
+    /**
+     * How long a publisher waiting for room parks at a time
+     */
+    private static final long FULL_PARK_NANOS = 50_000L;
+
+    /**
+     * How long the dispatcher parks at most when there is nothing to do,
+     * publishers wake it earlier
+     */
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    private static final int KIND_REF = 0;
+    private static final int KIND_INT = 1;
+    private static final int KIND_BOOLEAN = 2;
+
+    /**
+     * One reusable entry of the ring. Plain fields are published to the dispatcher
+     * by the volatile write of sequence.
+     */
+    private static final class Slot {
+        private volatile long sequence = -1;
+        private Topics topic;
+        private int kind;
+        private int intValue;
+        private boolean booleanValue;
+        private Object ref;
+        /**
+         * System.nanoTime() when the publisher claimed the slot
+         */
+        private long publishedAt;
+        /**
+         * The sequence claimed for this slot, not yet visible to the dispatcher
+         */
+        private long pending;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+
+    /**
+     * The next sequence number a publisher will claim
+     */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /**
+     * Every sequence below this has been dispatched and its slot may be reused
+     */
+    private volatile long consumed;
+
+    private volatile boolean sleeping;
+
+    /**
+     * Subscribers per topic, indexed by ordinal
+     */
+    private final Subscribers[] subscribers = Subscribers.forAllTopics();
+
+    private final Thread dispatcher;
+
+    public RingBufferEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity how many events may wait for the dispatcher, rounded up to a power of two
+     */
+    public RingBufferEventBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+
+        this.dispatcher = new Thread(this::dispatchLoop, "RingBufferEventBus");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public void publish(Topics topic, Object payload) {
+        if (payload instanceof Integer value) {
+            publish(topic, value.intValue());
+            return;
+        }
+        if (payload instanceof Boolean value) {
+            publish(topic, value.booleanValue());
+            return;
+        }
+        Slot slot = claim(topic, KIND_REF);
+        if (slot == null) {
+            deliver(EventCache.of(topic, payload));
+            return;
+        }
+        slot.ref = payload;
+        commit(slot);
+    }
+
+    @Override
+    public void publish(Topics topic, int value) {
+        Slot slot = claim(topic, KIND_INT);
+        if (slot == null) {
+            deliverInt(topic, value);
+            return;
+        }
+        slot.intValue = value;
+        commit(slot);
+    }
+
+    @Override
+    public void publish(Topics topic, boolean value) {
+        Slot slot = claim(topic, KIND_BOOLEAN);
+        if (slot == null) {
+            deliverBoolean(topic, value);
+            return;
+        }
+        slot.booleanValue = value;
+        commit(slot);
+    }
+
+    @Override
+    public void subscribe(Topics topic, Consumer<Event> handler) {
+        subscribers[topic.ordinal()].add(handler);
+    }
+
+    @Override
+    public void subscribeInt(Topics topic, IntConsumer handler) {
+        subscribers[topic.ordinal()].addInt(handler);
+    }
+
+    @Override
+    public void subscribeBoolean(Topics topic, BooleanConsumer handler) {
+        subscribers[topic.ordinal()].addBoolean(handler);
+    }
+
+    /**
+     * Claim the next slot, waiting while the ring is full.
+     *
+     * @return the slot with its topic and kind set, or null if the caller is the
+     *         dispatcher and the ring is full, in which case it must deliver inline
+     */
+    private Slot claim(Topics topic, int kind) {
+        subscribers[topic.ordinal()].published();
+        long seq;
+        if (Thread.currentThread() == dispatcher) {
+            // Only claim when there is room, the dispatcher can't wait for itself
+            do {
+                seq = claimed.get();
+                if (seq - consumed >= slots.length) {
+                    return null;
+                }
+            } while (!claimed.compareAndSet(seq, seq + 1));
+        } else {
+            seq = claimed.getAndIncrement();
+            int tries = 0;
+            while (seq - consumed >= slots.length) {
+                wakeDispatcher();
+                if (tries++ < YIELD_TRIES) {
+                    pause(tries);
+                } else {
+                    LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                }
+            }
+        }
+        Slot slot = slots[(int) seq & mask];
+        slot.topic = topic;
+        slot.kind = kind;
+        slot.publishedAt = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
+        // Stash the claimed sequence, commit() publishes it
+        slot.pending = seq;
+        return slot;
+    }
+
+    private void commit(Slot slot) {
+        slot.sequence = slot.pending;
+        wakeDispatcher();
+    }
+
+    private void wakeDispatcher() {
+        if (sleeping) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    private static void pause(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+    private void dispatchLoop() {
+        long next = 0;
+        int idle = 0;
+        while (true) {
+            Slot slot = slots[(int) next & mask];
+            if (slot.sequence != next) {
+                if (++idle < YIELD_TRIES) {
+                    pause(idle);
+                    continue;
+                }
+                sleeping = true;
+                if (slot.sequence != next) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+                idle = 0;
+                continue;
+            }
+            idle = 0;
+
+            // Copy the slot out and free it before calling out, a subscriber may publish
+            Topics topic = slot.topic;
+            int kind = slot.kind;
+            int intValue = slot.intValue;
+            boolean booleanValue = slot.booleanValue;
+            Object ref = slot.ref;
+            long publishedAt = slot.publishedAt;
+            slot.ref = null;
+            next++;
+            consumed = next;
+
+            subscribers[topic.ordinal()].delivering(publishedAt);
+            switch (kind) {
+                case KIND_INT -> deliverInt(topic, intValue);
+                case KIND_BOOLEAN -> deliverBoolean(topic, booleanValue);
+                default -> deliver(EventCache.of(topic, ref));
+            }
+        }
+    }
+
+    private void deliver(Event event) {
+        try {
+            subscribers[event.topic().ordinal()].deliver(event);
+        } catch (RuntimeException e) {
+            failed(event.topic(), e);
+        }
+    }
+
+    private void deliverInt(Topics topic, int value) {
+        try {
+            subscribers[topic.ordinal()].deliver(value);
+        } catch (RuntimeException e) {
+            failed(topic, e);
+        }
+    }
+
+    private void deliverBoolean(Topics topic, boolean value) {
+        try {
+            subscribers[topic.ordinal()].deliver(value);
+        } catch (RuntimeException e) {
+            failed(topic, e);
+        }
+    }
+
+    private static void failed(Topics topic, RuntimeException e) {
+        System.err.println("[BUS ] subscriber of " + topic + " failed: " + e);
+        e.printStackTrace();
+    }
+}
@@ -0,0 +1,179 @@
+package Wiring;
+
+import Logging.EventLog;
+import Logging.Logger;
+import SoftwareBus.Bus.Bus;
+import SoftwareBus.Bus.Message;
+import SoftwareBus.Bus.Topic;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bridges an in-process EventBus and the socket SoftwareBus.Bus, so a controller
+ * speaking Wiring.Topics can drive displays speaking integer Topic/Message.
+ *
+ * What crosses the bridge is a declarative table of Routes. Each route ties one
+ * Wiring topic to one bus topic/subtopic, says which way it flows and how the
+ * payload is packed into body field b1. Nothing is looked up by reflection.
+ *
+ * Routes flowing BOTH ways would bounce every event back where it came from, so
+ * the adapter remembers what it just forwarded on such routes and swallows the
+ * copy when it comes back.
+ */
+public class SoftwareBusAdapter {
+    private static final Logger LOG = EventLog.logger("BRDG");
+
+    public enum Direction {
+        /** EventBus events are published on the bus */
+        TO_BUS,
+        /** Bus messages are published on the EventBus */
+        FROM_BUS,
+        BOTH
+    }
+
+    /**
+     * How a payload travels in body field b1
+     */
+    public enum Codec {
+        /** No payload, b1 is 0 and events carry null */
+        NONE,
+        /** An int, shifted by the route's offset on the way to the bus */
+        INT,
+        /** A boolean as 1 or 0 */
+        BOOLEAN
+    }
+
+    /**
+     * One row of the mapping table.
+     * offset is added to INT payloads going to the bus and taken off coming back,
+     * e.g. 1 when the bus side counts floors from 1 and the controller from 0.
+     */
+    public record Route(Topics topic, Direction direction, int busTopic, int busSubtopic,
+                        Codec codec, int offset) {
+    }
+
+    /**
+     * How many forwarded values a BOTH route remembers while waiting for their echo
+     */
+    private static final int MAX_PENDING_ECHOES = 64;
+
+    private final EventBus events;
+    private final Bus bus;
+
+    /**
+     * The routing table for one car of the command center display (CommandCenter.Topics):
+     *   SIM_FLOOR_TICK  -> ELEVATOR_POSITION (1, carId), floors counted from 1
+     *   FLOOR_SELECT (8, carId) -> UI_CABIN_SELECT
+     *   UI_FIRE_TOGGLED <-> fire alarm (5, 0)
+     */
+    public static List<Route> commandCenterRoutes(int carId) {
+        List<Route> routes = new ArrayList<>();
+        routes.add(new Route(Topics.SIM_FLOOR_TICK, Direction.TO_BUS, 1, carId, Codec.INT, 1));
+        routes.add(new Route(Topics.UI_CABIN_SELECT, Direction.FROM_BUS, 8, carId, Codec.INT, 1));
+        routes.add(new Route(Topics.UI_FIRE_TOGGLED, Direction.BOTH, 5, 0, Codec.BOOLEAN, 0));
+        return routes;
+    }
+
+    /**
+     * The routing table for the hall bus of a Control.GroupController:
+     *   ELEVATOR_MODE (7, 0) -> UI_GROUP_MODE, the CommandCenter.states.ElevatorMode ordinal
+     */
+    public static List<Route> groupRoutes() {
+        List<Route> routes = new ArrayList<>();
+        routes.add(new Route(Topics.UI_GROUP_MODE, Direction.FROM_BUS, 7, 0, Codec.INT, 0));
+        return routes;
+    }
+
+    public SoftwareBusAdapter(EventBus events, Bus bus, List<Route> routes) {
+        this.events = events;
+        this.bus = bus;
+
+        for (Route route : routes) {
+            Link link = new Link(route);
+            if (route.direction() != Direction.FROM_BUS) {
+                events.subscribe(route.topic(), link::toBus);
+            }
+            if (route.direction() != Direction.TO_BUS) {
+                bus.subscribe(link.busTopic, link::fromBus);
+            }
+        }
+        LOG.info("Bridging to the software bus").field("routes", routes.size()).log();
+    }
+
+    /**
+     * The live half of a route: its bus topic and, for BOTH routes, the values
+     * forwarded each way that have not come back yet.
+     */
+    private final class Link {
+        private final Route route;
+        private final Topic busTopic;
+        private final boolean both;
+        private final ArrayDeque<Integer> sentToBus = new ArrayDeque<>();
+        private final ArrayDeque<Integer> sentToEvents = new ArrayDeque<>();
+
+        private Link(Route route) {
+            this.route = route;
+            this.busTopic = Topic.of(route.busTopic(), route.busSubtopic());
+            this.both = route.direction() == Direction.BOTH;
+        }
+
+        private void toBus(EventBus.Event e) {
+            int b1 = encode(e.payload());
+            if (both && isEcho(sentToEvents, b1)) {
+                return;
+            }
+            remember(sentToBus, b1);
+            bus.publish(busTopic, b1, 0, 0, 0);
+        }
+
+        private void fromBus(Message m) {
+            int b1 = m.bodyOne();
+            if (both && isEcho(sentToBus, b1)) {
+                return;
+            }
+            remember(sentToEvents, b1);
+            switch (route.codec()) {
+                case INT -> events.publish(route.topic(), b1 - route.offset());
+                case BOOLEAN -> events.publish(route.topic(), b1 != 0);
+                case NONE -> events.publish(route.topic(), (Object) null);
+            }
+        }
+
+        private int encode(Object payload) {
+            return switch (route.codec()) {
+                case INT -> (payload instanceof Integer value) ? value + route.offset() : 0;
+                case BOOLEAN -> Boolean.TRUE.equals(payload) ? 1 : 0;
+                case NONE -> 0;
+            };
+        }
+
+        private void remember(ArrayDeque<Integer> sent, int b1) {
+            if (!both) {
+                return;
+            }
+            synchronized (sent) {
+                if (sent.size() == MAX_PENDING_ECHOES) {
+                    sent.poll();
+                }
+                sent.add(b1);
+            }
+        }
+
+        /**
+         * Echoes come back in the order they were sent, so only the oldest value
+         * still waiting can match
+         */
+        private boolean isEcho(ArrayDeque<Integer> sent, int b1) {
+            synchronized (sent) {
+                Integer oldest = sent.peek();
+                if (oldest != null && oldest == b1) {
+                    sent.poll();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package Wiring;
+
+import Metrics.LatencyHistogram;
+import Metrics.Meter;
+import Metrics.MetricsRegistry;
+import Wiring.EventBus.Event;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * The subscribers of one topic, kept in arrays that are replaced on subscribe so
+ * delivery never locks and never allocates an iterator.
+ *
+ * Event subscribers see every event. Primitive subscribers see the events whose
+ * payload has their type, unboxed when the event was published as an Object.
+ * Event subscribers always run first, however the event was published.
+ *
+ * This is also where a topic's metrics live: how often it is published, how long
+ * its events wait on queued buses, and how long each subscriber takes. Handlers
+ * are wrapped with their timing when they subscribe, so delivery stays one loop.
+ */
+final class Subscribers {
+    private final Topics topic;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private volatile Consumer<Event>[] events = new Consumer[0];
+    private volatile IntConsumer[] ints = new IntConsumer[0];
+    private volatile BooleanConsumer[] booleans = new BooleanConsumer[0];
+
+    private final Meter published;
+    private final LatencyHistogram latency;
+
+    Subscribers(Topics topic) {
+        this.topic = topic;
+        this.published = MetricsRegistry.global().meter("eventbus.publish." + topic);
+        this.latency = MetricsRegistry.global().histogram("eventbus.latency." + topic);
+    }
+
+    static Subscribers[] forAllTopics() {
+        Topics[] topics = Topics.values();
+        Subscribers[] all = new Subscribers[topics.length];
+        for (Topics topic : topics) {
+            all[topic.ordinal()] = new Subscribers(topic);
+        }
+        return all;
+    }
+
+    synchronized void add(Consumer<Event> handler) {
+        if (MetricsRegistry.ENABLED) {
+            LatencyHistogram time = handlerTime(handler);
+            Consumer<Event> inner = handler;
+            handler = event -> {
+                long start = System.nanoTime();
+                try {
+                    inner.accept(event);
+                } finally {
+                    time.record(System.nanoTime() - start);
+                }
+            };
+        }
+        events = append(events, handler);
+    }
+
+    synchronized void addInt(IntConsumer handler) {
+        if (MetricsRegistry.ENABLED) {
+            LatencyHistogram time = handlerTime(handler);
+            IntConsumer inner = handler;
+            handler = value -> {
+                long start = System.nanoTime();
+                try {
+                    inner.accept(value);
+                } finally {
+                    time.record(System.nanoTime() - start);
+                }
+            };
+        }
+        ints = append(ints, handler);
+    }
+
+    synchronized void addBoolean(BooleanConsumer handler) {
+        if (MetricsRegistry.ENABLED) {
+            LatencyHistogram time = handlerTime(handler);
+            BooleanConsumer inner = handler;
+            handler = value -> {
+                long start = System.nanoTime();
+                try {
+                    inner.accept(value);
+                } finally {
+                    time.record(System.nanoTime() - start);
+                }
+            };
+        }
+        booleans = append(booleans, handler);
+    }
+
+    private LatencyHistogram handlerTime(Object handler) {
+        return MetricsRegistry.global().histogram("eventbus.handler." + topic + "." + MetricsRegistry.ownerOf(handler));
+    }
+
+    /**
+     * Count a publish of this topic
+     */
+    void published() {
+        if (MetricsRegistry.ENABLED) {
+            published.mark();
+        }
+    }
+
+    /**
+     * Record how long an event waited between publish and delivery
+     *
+     * @param publishedAt System.nanoTime() when it was published
+     */
+    void delivering(long publishedAt) {
+        if (MetricsRegistry.ENABLED) {
+            latency.record(System.nanoTime() - publishedAt);
+        }
+    }
+
+    void deliver(Event event) {
+        for (Consumer<Event> handler : events) {
+            handler.accept(event);
+        }
+        Object payload = event.payload();
+        if (payload instanceof Integer value) {
+            for (IntConsumer handler : ints) {
+                handler.accept(value);
+            }
+        } else if (payload instanceof Boolean value) {
+            for (BooleanConsumer handler : booleans) {
+                handler.accept(value);
+            }
+        }
+    }
+
+    void deliver(int value) {
+        Consumer<Event>[] current = events;
+        if (current.length > 0) {
+            Event event = EventCache.of(topic, value);
+            for (Consumer<Event> handler : current) {
+                handler.accept(event);
+            }
+        }
+        for (IntConsumer handler : ints) {
+            handler.accept(value);
+        }
+    }
+
+    void deliver(boolean value) {
+        Consumer<Event>[] current = events;
+        if (current.length > 0) {
+            Event event = EventCache.of(topic, value);
+            for (Consumer<Event> handler : current) {
+                handler.accept(event);
+            }
+        }
+        for (BooleanConsumer handler : booleans) {
+            handler.accept(value);
+        }
+    }
+
+    private static <T> T[] append(T[] old, T handler) {
+        T[] grown = Arrays.copyOf(old, old.length + 1);
+        grown[old.length] = handler;
+        return grown;
+    }
+}
@@ -1,14 +1,37 @@
 package Wiring;
 
 public enum Topics {
-    UI_HALL_CALL_UP,
-    UI_HALL_CALL_DOWN,
-    UI_CABIN_SELECT,
-    UI_FIRE_TOGGLED,
-    CTRL_CMD_MOVE_TO,
-    SIM_FLOOR_TICK,
-    SIM_ARRIVED,
-    CTRL_CMD_STOP,
-    UI_OVERLOAD_TOGGLED,
-    UI_OBSTRUCT_TOGGLED;
+    UI_HALL_CALL_UP(Payload.INT),
+    UI_HALL_CALL_DOWN(Payload.INT),
+    UI_CABIN_SELECT(Payload.INT),
+    UI_FIRE_TOGGLED(Payload.BOOLEAN),
+    CTRL_CMD_MOVE_TO(Payload.INT),
+    SIM_FLOOR_TICK(Payload.INT),
+    SIM_ARRIVED(Payload.INT),
+    CTRL_CMD_STOP(Payload.NONE),
+    UI_OVERLOAD_TOGGLED(Payload.BOOLEAN),
+    UI_OBSTRUCT_TOGGLED(Payload.BOOLEAN),
+    CTRL_FLOOR_SERVED(Payload.INT),
+    CTRL_CMD_RETARGET(Payload.INT),
+    SIM_RETARGET_REJECTED(Payload.INT),
+    UI_GROUP_MODE(Payload.INT);
+
+    /**
+     * What a topic's events carry: a floor (INT), a toggle (BOOLEAN) or nothing.
+     */
+    public enum Payload {
+        NONE,
+        INT,
+        BOOLEAN
+    }
+
+    private final Payload payload;
+
+    Topics(Payload payload) {
+        this.payload = payload;
+    }
+
+    public Payload payload() {
+        return payload;
+    }
 }
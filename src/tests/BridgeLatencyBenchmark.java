@@ -0,0 +1,98 @@
+package tests;
+
+import SoftwareBus.Bus.Bus;
+import Wiring.EventBus;
+import Wiring.InMemoryEventBus;
+import Wiring.SoftwareBusAdapter;
+import Wiring.SoftwareBusAdapter.Codec;
+import Wiring.SoftwareBusAdapter.Direction;
+import Wiring.SoftwareBusAdapter.Route;
+import Wiring.Topics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * BridgeLatencyBenchmark — End-to-end latency through SoftwareBusAdapter
+ * Two EventBuses in one JVM are bridged over the local socket bus: SIM_FLOOR_TICK
+ * published on the "controller" side crosses an adapter, the broker and a second
+ * adapter before reaching a subscriber on the "display" side. One event is in flight
+ * at a time, so each sample is the full one-way trip. A burst run follows to show
+ * throughput with the pipeline full.
+ */
+
+public class BridgeLatencyBenchmark {
+    private static final int WARMUP = 20_000;
+    private static final int SAMPLES = 100_000;
+    private static final int BURST = 500_000;
+
+    private static final long[] sentAt = new long[SAMPLES];
+    private static final long[] latencies = new long[SAMPLES];
+    private static final Semaphore arrived = new Semaphore(0);
+    private static volatile boolean measuring;
+    private static volatile int received;
+
+    public static void main(String[] args) throws InterruptedException {
+        EventBus controllerSide = new InMemoryEventBus();
+        EventBus displaySide = new InMemoryEventBus();
+
+        // Handlers run on the bus reader thread, nothing but the bridge is measured
+        new SoftwareBusAdapter(controllerSide, new Bus(Runnable::run), List.of(
+                new Route(Topics.SIM_FLOOR_TICK, Direction.TO_BUS, 1, 1, Codec.INT, 0)));
+        new SoftwareBusAdapter(displaySide, new Bus(Runnable::run), List.of(
+                new Route(Topics.SIM_FLOOR_TICK, Direction.FROM_BUS, 1, 1, Codec.INT, 0)));
+
+        displaySide.subscribe(Topics.SIM_FLOOR_TICK, e -> {
+            int i = (int) e.payload();
+            if (measuring) {
+                latencies[i] = System.nanoTime() - sentAt[i];
+            }
+            received++;
+            arrived.release();
+        });
+        sleep(500);
+
+        System.out.println("=== Bridge latency: " + WARMUP + " warmup, " + SAMPLES + " samples ===");
+        for (int i = 0; i < WARMUP; i++) {
+            controllerSide.publish(Topics.SIM_FLOOR_TICK, i % SAMPLES);
+            arrived.acquire();
+        }
+
+        measuring = true;
+        for (int i = 0; i < SAMPLES; i++) {
+            sentAt[i] = System.nanoTime();
+            controllerSide.publish(Topics.SIM_FLOOR_TICK, i);
+            arrived.acquire();
+        }
+        measuring = false;
+
+        Arrays.sort(latencies);
+        System.out.printf("p50 %.1f us  p90 %.1f us  p99 %.1f us  p99.9 %.1f us  max %.1f us%n",
+                micros(0.50), micros(0.90), micros(0.99), micros(0.999),
+                latencies[SAMPLES - 1] / 1000.0);
+
+        received = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < BURST; i++) {
+            controllerSide.publish(Topics.SIM_FLOOR_TICK, i % SAMPLES);
+        }
+        arrived.drainPermits();
+        while (received < BURST) {
+            arrived.acquire();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("burst of %d events: %.0f events/s%n", BURST, BURST / seconds);
+
+        System.out.println("=== Benchmark complete ===");
+        System.exit(0);
+    }
+
+    private static double micros(double quantile) {
+        return latencies[(int) (quantile * (SAMPLES - 1))] / 1000.0;
+    }
+
+    private static void sleep(long ms) {
+        try { Thread.sleep(ms); } catch (InterruptedException ignored) {}
+    }
+}
@@ -0,0 +1,98 @@
+package tests;
+
+import SoftwareBus.Bus.Bus;
+import SoftwareBus.Bus.Topic;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * BusAllocationBenchmark — Bytes allocated per message on the socket bus hot path
+ * Messages are published with Bus.publish(Topic, b1..b4), relayed by the broker and
+ * taken back from the inbox, in rounds so the inbox stays small. The bytes each thread
+ * allocates are read with com.sun.management.ThreadMXBean.getThreadAllocatedBytes:
+ *   publisher (the publish calls only), broker (the relay), reader (decoding and
+ *   delivering, which builds the one Message a subscriber gets).
+ * Publishing and relaying must stay allocation-free, the run fails otherwise.
+ */
+
+public class BusAllocationBenchmark {
+    private static final int WARMUP = 50_000;
+    private static final int MESSAGES = 500_000;
+    private static final int ROUND = 1_000;
+
+    /**
+     * Allowed average per message on the allocation-free paths, for the odd
+     * allocation made outside the bus (class loading, JIT deoptimization)
+     */
+    private static final double MAX_BYTES_PER_MESSAGE = 1.0;
+
+    public static void main(String[] args) throws InterruptedException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        Bus bus = new Bus();
+        Topic topic = Topic.of(4, 1);
+        bus.subscribe(topic);
+        sleep(300);
+
+        Thread broker = thread("SoftwareBus-Broker");
+        Thread reader = thread("SoftwareBus-Reader");
+        if (broker == null || reader == null) {
+            System.out.println("Bus threads not found, is another broker holding the port?");
+            System.exit(1);
+        }
+
+        relay(bus, topic, WARMUP, threads);
+
+        System.out.println("=== " + MESSAGES + " messages ===");
+        long brokerBefore = threads.getThreadAllocatedBytes(broker.threadId());
+        long readerBefore = threads.getThreadAllocatedBytes(reader.threadId());
+        long published = relay(bus, topic, MESSAGES, threads);
+        double publisher = published / (double) MESSAGES;
+        double relayed = (threads.getThreadAllocatedBytes(broker.threadId()) - brokerBefore) / (double) MESSAGES;
+        double delivered = (threads.getThreadAllocatedBytes(reader.threadId()) - readerBefore) / (double) MESSAGES;
+
+        System.out.printf("publisher %.2f bytes/message%n", publisher);
+        System.out.printf("broker    %.2f bytes/message%n", relayed);
+        System.out.printf("reader    %.2f bytes/message (the delivered Message)%n", delivered);
+
+        boolean passed = publisher <= MAX_BYTES_PER_MESSAGE && relayed <= MAX_BYTES_PER_MESSAGE;
+        System.out.println("=== " + (passed ? "PASS" : "FAIL") + ": publish and relay at most "
+                + MAX_BYTES_PER_MESSAGE + " bytes/message ===");
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Publish and take back count messages
+     *
+     * @return the bytes this thread allocated inside the publish calls
+     */
+    private static long relay(Bus bus, Topic topic, int count, com.sun.management.ThreadMXBean threads)
+            throws InterruptedException {
+        long published = 0;
+        for (int sent = 0; sent < count; sent += ROUND) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < ROUND; i++) {
+                bus.publish(topic, sent + i, 0, 0, 0);
+            }
+            published += threads.getCurrentThreadAllocatedBytes() - before;
+            for (int i = 0; i < ROUND; i++) {
+                bus.take(topic);
+            }
+        }
+        return published;
+    }
+
+    private static Thread thread(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name)) {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+    private static void sleep(long ms) {
+        try { Thread.sleep(ms); } catch (InterruptedException ignored) {}
+    }
+}
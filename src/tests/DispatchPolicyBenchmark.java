@@ -0,0 +1,95 @@
+package tests;
+
+import Control.DispatchPolicy;
+import Control.ElevatorController;
+import Control.UiPort;
+import Sim.MockSim;
+import Sim.VirtualClock;
+import Wiring.EventBus;
+import Wiring.InMemoryEventBus;
+import Wiring.Topics;
+import tests.PassengerTraffic.Passenger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static tests.PassengerTraffic.average;
+import static tests.PassengerTraffic.generateTrace;
+import static tests.PassengerTraffic.percentile;
+import static tests.PassengerTraffic.readTrace;
+
+/**
+ * DispatchPolicyBenchmark — Replay one passenger trace through every dispatch policy
+ * Each policy gets a fresh headless ElevatorController and MockSim on a VirtualClock,
+ * so an hour of traffic runs in well under a second. A passenger presses the hall
+ * call at their floor, boards when the car serves that floor (CTRL_FLOOR_SERVED) and
+ * leaves it in their direction, presses their destination in the cabin and leaves when
+ * it is served.
+ *
+ * Reported per policy: wait (arrival to boarding) and journey (arrival to leaving)
+ * as average / p95 / p99, and an energy proxy of floors travelled plus
+ * START_FLOORS per departure, since accelerating costs more than cruising.
+ *
+ * The trace is read from the file given as the first argument, one passenger per line
+ * as "atMs,from,to" (# starts a comment). Without one a seeded up-peak trace is used:
+ * two thirds of the passengers start at the lobby.
+ */
+
+public class DispatchPolicyBenchmark {
+    private static final int FLOORS = 16;
+    private static final int PASSENGERS = 300;
+    private static final long MEAN_GAP_MS = 6000;
+    private static final int START_FLOORS = 2;
+
+    /**
+     * How long a policy may take to clear the trace, in simulated time
+     */
+    private static final long LIMIT_MS = 24 * 3_600_000L;
+
+    public static void main(String[] args) throws IOException {
+        List<Passenger> trace = args.length > 0 ? readTrace(Path.of(args[0]))
+                : generateTrace(new Random(42), PASSENGERS, FLOORS, MEAN_GAP_MS);
+        System.out.println("=== " + trace.size() + " passengers ===");
+        for (String name : DispatchPolicy.NAMES) {
+            run(DispatchPolicy.named(name), trace);
+        }
+        System.out.println("=== Benchmark complete ===");
+        System.exit(0);
+    }
+
+    private static void run(DispatchPolicy policy, List<Passenger> trace) {
+        VirtualClock clock = new VirtualClock();
+        EventBus bus = new InMemoryEventBus();
+        ElevatorController car = new ElevatorController(bus, UiPort.headless(), clock, policy);
+        new MockSim(bus, clock);
+
+        PassengerTraffic.Recorder passengers = new PassengerTraffic.Recorder(clock, trace.size());
+        passengers.attach(bus, car);
+
+        long[] energy = {0, 0};
+        int[] lastFloor = {0};
+        bus.subscribeInt(Topics.SIM_FLOOR_TICK, floor -> {
+            if (floor != lastFloor[0]) {
+                energy[0] += Math.abs(floor - lastFloor[0]);
+                lastFloor[0] = floor;
+            }
+        });
+        bus.subscribeInt(Topics.CTRL_CMD_MOVE_TO, floor -> energy[1]++);
+
+        for (Passenger p : trace) {
+            clock.schedule(p.atMs(), () -> passengers.arrive(p, bus));
+        }
+        clock.runUntilIdle(LIMIT_MS);
+
+        long[] w = passengers.waits();
+        long[] j = passengers.journeys();
+        System.out.printf("%-8s delivered %d/%d | wait avg %5.1f s p95 %5.1f p99 %5.1f | journey avg %5.1f s p95 %5.1f p99 %5.1f"
+                        + " | %d floors, %d starts, energy %d | done at %d s%n",
+                policy.name(), j.length, trace.size(),
+                average(w), percentile(w, 0.95), percentile(w, 0.99),
+                average(j), percentile(j, 0.95), percentile(j, 0.99),
+                energy[0], energy[1], energy[0] + START_FLOORS * energy[1], clock.nowMillis() / 1000);
+    }
+}
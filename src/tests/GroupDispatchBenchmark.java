@@ -0,0 +1,98 @@
+package tests;
+
+import CommandCenter.states.ElevatorMode;
+import Control.DispatchPolicy;
+import Control.ElevatorController;
+import Control.GroupController;
+import Control.UiPort;
+import Sim.MockSim;
+import Sim.VirtualClock;
+import Wiring.EventBus;
+import Wiring.InMemoryEventBus;
+import Wiring.Topics;
+import tests.PassengerTraffic.Passenger;
+
+import java.util.List;
+import java.util.Random;
+
+import static tests.PassengerTraffic.average;
+import static tests.PassengerTraffic.generateTrace;
+import static tests.PassengerTraffic.percentile;
+
+/**
+ * GroupDispatchBenchmark — Run one passenger trace through a group of cars in each group mode
+ * Every car gets its own bus, headless ElevatorController (LOOK) and MockSim, all on one
+ * VirtualClock. The lobby publishes hall calls on a separate hall bus that a
+ * GroupController hands out to the cars.
+ *
+ * A passenger presses the hall call at their floor and boards the first car that serves
+ * it (CTRL_FLOOR_SERVED on that car's bus) going their way, then presses their destination
+ * on that car's bus and leaves when it is served.
+ *
+ * Reported per mode: wait and journey as average / p95 / p99, how many departures the
+ * cars made, and the hall calls the group still holds as assigned at the end, which
+ * must be none.
+ */
+
+public class GroupDispatchBenchmark {
+    private static final int CARS = 4;
+    private static final int FLOORS = 16;
+    private static final int PASSENGERS = 600;
+    private static final long MEAN_GAP_MS = 2500;
+
+    /**
+     * How long a mode may take to clear the trace, in simulated time
+     */
+    private static final long LIMIT_MS = 24 * 3_600_000L;
+
+    public static void main(String[] args) {
+        List<Passenger> trace = generateTrace(new Random(args.length > 0 ? Long.parseLong(args[0]) : 42),
+                PASSENGERS, FLOORS, MEAN_GAP_MS);
+        System.out.println("=== " + trace.size() + " passengers, " + CARS + " cars ===");
+        boolean passed = true;
+        for (ElevatorMode mode : new ElevatorMode[]{ElevatorMode.CENTRALIZED, ElevatorMode.INDEPENDENT}) {
+            passed &= run(mode, trace);
+        }
+        System.out.println("=== " + (passed ? "PASS" : "FAIL") + ": every passenger delivered ===");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run(ElevatorMode mode, List<Passenger> trace) {
+        VirtualClock clock = new VirtualClock();
+        EventBus hallBus = new InMemoryEventBus();
+        GroupController group = new GroupController(hallBus, mode);
+
+        PassengerTraffic.Recorder passengers = new PassengerTraffic.Recorder(clock, trace.size());
+        int[] starts = {0};
+
+        for (int i = 0; i < CARS; i++) {
+            EventBus bus = new InMemoryEventBus();
+            ElevatorController car = new ElevatorController(bus, UiPort.headless(), clock, DispatchPolicy.look());
+            group.addCar(bus, car);
+            new MockSim(bus, clock);
+
+            passengers.attach(bus, car);
+            bus.subscribeInt(Topics.CTRL_CMD_MOVE_TO, floor -> starts[0]++);
+        }
+
+        for (Passenger p : trace) {
+            clock.schedule(p.atMs(), () -> passengers.arrive(p, hallBus));
+        }
+        clock.runUntilIdle(LIMIT_MS);
+
+        int held = 0;
+        for (int i = 0; i < CARS; i++) {
+            held += Long.bitCount(group.hallUpMask(i)) + Long.bitCount(group.hallDownMask(i));
+        }
+
+        long[] w = passengers.waits();
+        long[] j = passengers.journeys();
+        System.out.printf("%-11s delivered %d/%d | wait avg %5.1f s p95 %5.1f p99 %5.1f | journey avg %5.1f s p95 %5.1f p99 %5.1f"
+                        + " | %d starts | %d calls held | done at %d s%n",
+                mode, j.length, trace.size(),
+                average(w), percentile(w, 0.95), percentile(w, 0.99),
+                average(j), percentile(j, 0.95), percentile(j, 0.99),
+                starts[0], held, clock.nowMillis() / 1000);
+        return j.length == trace.size() && held == 0;
+    }
+}
@@ -0,0 +1,133 @@
+package tests;
+
+import Journal.JournalReplayer;
+import Journal.JournalWriter;
+import Wiring.EventBus;
+import Wiring.InMemoryEventBus;
+import Wiring.Topics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * JournalReplayBenchmark — Record a synthetic shift and replay it
+ * A seeded stream of hall calls, cabin selections, floor ticks and fire toggles is
+ * published on an InMemoryEventBus while a JournalWriter records it. The journal is
+ * then replayed at max speed into a fresh bus, twice, and each replay must reproduce
+ * the recorded sequence exactly (compared by a running checksum). A short slice is
+ * replayed at 1x and must take as long as its recording did, within PACED_TOLERANCE.
+ * The run exits non-zero when either check fails.
+ */
+
+public class JournalReplayBenchmark {
+    private static final int EVENTS = 1_000_000;
+    private static final int PACED_EVENTS = 200;
+    private static final long PACED_GAP_MS = 5;
+
+    /**
+     * How far the 1x replay may be off the time the slice took to record, as a fraction
+     */
+    private static final double PACED_TOLERANCE = 0.2;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("journal-");
+        long[] recorded = {0};
+        boolean passed = true;
+
+        EventBus live = new InMemoryEventBus();
+        subscribeChecksum(live, recorded);
+        long start;
+        try (JournalWriter journal = JournalWriter.open(directory)) {
+            journal.record(live);
+            start = System.nanoTime();
+            publishShift(live);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("recorded %d events: %.0f events/s%n", journal.records(), EVENTS / seconds);
+        }
+
+        System.out.println("=== Replay at max speed ===");
+        for (int run = 1; run <= 2; run++) {
+            long[] replayed = {0};
+            EventBus bus = new InMemoryEventBus();
+            subscribeChecksum(bus, replayed);
+            start = System.nanoTime();
+            long count = new JournalReplayer(directory).replay(bus, null, JournalReplayer.MAX_SPEED);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            boolean identical = count == EVENTS && replayed[0] == recorded[0];
+            passed &= identical;
+            System.out.printf("run %d: %d events, %.0f events/s, sequence %s%n", run, count, count / seconds,
+                    identical ? "identical" : "DIFFERENT");
+        }
+
+        System.out.println("=== Replay at 1x ===");
+        Path paced = Files.createTempDirectory("journal-paced-");
+        long recordedMs;
+        try (JournalWriter journal = JournalWriter.open(paced)) {
+            EventBus bus = new InMemoryEventBus();
+            journal.record(bus);
+            start = System.nanoTime();
+            for (int i = 0; i < PACED_EVENTS; i++) {
+                if (i > 0) {
+                    sleep(PACED_GAP_MS);
+                }
+                bus.publish(Topics.SIM_FLOOR_TICK, i % 10);
+            }
+            recordedMs = (System.nanoTime() - start) / 1_000_000;
+        }
+        start = System.nanoTime();
+        new JournalReplayer(paced).replay(new InMemoryEventBus(), null, 1);
+        long replayedMs = (System.nanoTime() - start) / 1_000_000;
+        boolean kept = Math.abs(replayedMs - recordedMs) <= recordedMs * PACED_TOLERANCE;
+        passed &= kept;
+        System.out.printf("recorded over %d ms, replayed in %d ms, timing %s%n", recordedMs, replayedMs,
+                kept ? "kept" : "OFF");
+
+        delete(directory);
+        delete(paced);
+        System.out.println("=== " + (passed ? "PASS" : "FAIL") + ": replays identical, 1x within "
+                + (int) (PACED_TOLERANCE * 100) + "% ===");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void publishShift(EventBus bus) {
+        Random random = new Random(42);
+        for (int i = 0; i < EVENTS; i++) {
+            int floor = random.nextInt(10);
+            switch (random.nextInt(6)) {
+                case 0 -> bus.publish(Topics.UI_HALL_CALL_UP, floor);
+                case 1 -> bus.publish(Topics.UI_HALL_CALL_DOWN, floor);
+                case 2 -> bus.publish(Topics.UI_CABIN_SELECT, floor);
+                case 3 -> bus.publish(Topics.UI_FIRE_TOGGLED, random.nextBoolean());
+                default -> bus.publish(Topics.SIM_FLOOR_TICK, floor);
+            }
+        }
+    }
+
+    /**
+     * Fold every event into a checksum that depends on order, topic and payload
+     */
+    private static void subscribeChecksum(EventBus bus, long[] sum) {
+        for (Topics topic : Topics.values()) {
+            bus.subscribe(topic, e -> {
+                int value = (e.payload() instanceof Integer v) ? v
+                        : Boolean.TRUE.equals(e.payload()) ? 1 : 0;
+                sum[0] = sum[0] * 31 + topic.ordinal() * 1_000 + value;
+            });
+        }
+    }
+
+    private static void sleep(long ms) {
+        try { Thread.sleep(ms); } catch (InterruptedException ignored) {}
+    }
+}
@@ -0,0 +1,152 @@
+package tests;
+
+import Control.ElevatorController;
+import Sim.SimClock;
+import Wiring.EventBus;
+import Wiring.Topics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * PassengerTraffic — Passenger traces and the wait / journey bookkeeping the dispatch benchmarks share
+ * A Recorder follows passengers from their hall call to the floor they leave at. A waiting
+ * passenger boards a car that serves their floor (CTRL_FLOOR_SERVED on that car's bus) and
+ * leaves it in their direction, presses their destination on that car's bus and leaves
+ * when it is served. Someone going the other way waits for the car that answers their call.
+ */
+
+final class PassengerTraffic {
+    record Passenger(long atMs, int from, int to) { }
+
+    private PassengerTraffic() { }
+
+    /**
+     * Seeded up-peak trace: arrivals meanGapMs apart on average, two thirds of the
+     * passengers start at the lobby and half of the rest go down to it
+     */
+    static List<Passenger> generateTrace(Random random, int passengers, int floors, long meanGapMs) {
+        List<Passenger> trace = new ArrayList<>();
+        long at = 0;
+        for (int i = 0; i < passengers; i++) {
+            at += (long) (-Math.log(1 - random.nextDouble()) * meanGapMs);
+            int from = random.nextInt(3) == 0 ? random.nextInt(floors) : 0;
+            int to;
+            do {
+                to = random.nextInt(floors);
+            } while (to == from);
+            if (from != 0 && random.nextBoolean()) {
+                to = 0;
+            }
+            trace.add(new Passenger(at, from, to));
+        }
+        return trace;
+    }
+
+    /**
+     * One passenger per line as "atMs,from,to", # starts a comment
+     */
+    static List<Passenger> readTrace(Path file) throws IOException {
+        List<Passenger> trace = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            trace.add(new Passenger(Long.parseLong(fields[0].strip()),
+                    Integer.parseInt(fields[1].strip()), Integer.parseInt(fields[2].strip())));
+        }
+        return trace;
+    }
+
+    static double average(long[] sorted) {
+        return Arrays.stream(sorted).average().orElse(0) / 1000;
+    }
+
+    static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1000.0;
+    }
+
+    static final class Recorder {
+        private final SimClock clock;
+        // Passengers as {arrivedAt, from, to}
+        private final List<long[]> waiting = new ArrayList<>();
+        private final long[] waits;
+        private final long[] journeys;
+        private int boarded;
+        private int arrived;
+
+        Recorder(SimClock clock, int passengers) {
+            this.clock = clock;
+            this.waits = new long[passengers];
+            this.journeys = new long[passengers];
+        }
+
+        /**
+         * Board and drop off passengers whenever the car on this bus serves a floor
+         */
+        void attach(EventBus bus, ElevatorController car) {
+            List<long[]> riding = new ArrayList<>();
+            bus.subscribeInt(Topics.CTRL_FLOOR_SERVED, floor -> {
+                long now = clock.nowMillis();
+                for (Iterator<long[]> it = riding.iterator(); it.hasNext(); ) {
+                    long[] p = it.next();
+                    if (p[2] == floor) {
+                        it.remove();
+                        journeys[arrived++] = now - p[0];
+                    }
+                }
+                boolean up = car.isGoingUp();
+                List<long[]> boarding = new ArrayList<>();
+                for (Iterator<long[]> it = waiting.iterator(); it.hasNext(); ) {
+                    long[] p = it.next();
+                    if (p[1] == floor && p[2] > p[1] == up) {
+                        it.remove();
+                        boarding.add(p);
+                    }
+                }
+                for (long[] p : boarding) {
+                    waits[boarded++] = now - p[0];
+                    riding.add(p);
+                    bus.publish(Topics.UI_CABIN_SELECT, (int) p[2]);
+                }
+            });
+        }
+
+        /**
+         * The passenger reaches their floor now and presses the hall call on the given bus
+         */
+        void arrive(Passenger p, EventBus hallBus) {
+            waiting.add(new long[]{clock.nowMillis(), p.from(), p.to()});
+            hallBus.publish(p.to() > p.from() ? Topics.UI_HALL_CALL_UP : Topics.UI_HALL_CALL_DOWN, p.from());
+        }
+
+        /**
+         * @return the waits of everyone who boarded, sorted
+         */
+        long[] waits() {
+            long[] w = Arrays.copyOf(waits, boarded);
+            Arrays.sort(w);
+            return w;
+        }
+
+        /**
+         * @return the journeys of everyone who got off, sorted
+         */
+        long[] journeys() {
+            long[] j = Arrays.copyOf(journeys, arrived);
+            Arrays.sort(j);
+            return j;
+        }
+    }
+}